@@ -8,6 +8,7 @@ plugins {
     id("io.papermc.hangar-publish-plugin") version "0.1.2"
     id("com.gradleup.shadow") version "8.3.6"
     id("com.modrinth.minotaur") version "2.+"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -36,6 +37,9 @@ dependencies {
     compileOnly("com.github.retrooper:packetevents-spigot:2.9.4")
     compileOnly("com.github.retrooper:packetevents-spigot:2.9.4")
     implementation("com.lyttledev:lyttleutils:1.2.0")
+
+    // Benchmarks (src/jmh) run outside the server, so they need the API on their own classpath
+    jmh("io.papermc.paper:paper-api:" + (property("paperVersion") as String) + "-R0.1-SNAPSHOT")
 }
 
 group = "com.lyttledev"
@@ -62,6 +66,39 @@ tasks.named("build") {
     dependsOn("shadowJar", "copyContents")
 }
 
+// --- JMH benchmarks (./gradlew jmh) ---
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Run a subset with: ./gradlew jmh -Pjmh.includes=ClaimLookupBenchmark
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
+
+// --- Load simulation (./gradlew simulate -Psimulation.args="owners=2000 ticks=12000") ---
+val simulation by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[simulation.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
+dependencies {
+    // MockBukkit provides the server (and the Paper API) the simulation runs the plugin in
+    "simulationImplementation"("org.mockbukkit.mockbukkit:mockbukkit-v1.21:4.45.0")
+    "simulationImplementation"("com.github.MilkBowl:VaultAPI:1.7") { exclude(group = "org.bukkit", module = "bukkit") }
+    "simulationImplementation"("com.github.retrooper:packetevents-spigot:2.9.4")
+}
+
+val simulate by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Runs the headless load simulation (join storms, billing, place/break churn) and prints a report."
+    classpath = simulation.runtimeClasspath
+    mainClass.set("com.lyttledev.lyttlechunkloader.simulation.LoadSimulation")
+    args = (project.findProperty("simulation.args") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: listOf()
+    jvmArgs("-Xmx2g")
+}
+
 // --- Encoding setup for Java and Javadoc ---
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
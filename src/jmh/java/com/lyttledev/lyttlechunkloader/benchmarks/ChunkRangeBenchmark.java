@@ -0,0 +1,71 @@
+package com.lyttledev.lyttlechunkloader.benchmarks;
+
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Area and grid visualization hot paths of ChunkRangeUtil, against 100 to 100k synthetic loaders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChunkRangeBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int loaders;
+
+    private final ChunkRangeUtil chunkRangeUtil = new ChunkRangeUtil(1, 4);
+    private ClaimFixture fixture;
+    private int probe = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new ClaimFixture(loaders);
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (ClaimFixture.PROBES - 1);
+        return probe;
+    }
+
+    /**
+     * Areas of all loaders, as computed when every loader is (re)activated after startup.
+     */
+    @Benchmark
+    public void areaChunks(Blackhole blackhole) {
+        for (ChunkKey center : fixture.centers) {
+            blackhole.consume(chunkRangeUtil.getAreaChunks(center.getX(), center.getZ()));
+        }
+    }
+
+    @Benchmark
+    public void areaRoles(Blackhole blackhole) {
+        int i = nextProbe();
+        int px = fixture.probeX[i];
+        int pz = fixture.probeZ[i];
+        int radius = chunkRangeUtil.getVisualRadius();
+        Long2ObjectMap<String> nearby = fixture.spatialIndex.getCentersWithin(
+                fixture.worldIndex, px, pz, radius + chunkRangeUtil.getAreaRadius()
+        );
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                blackhole.consume(chunkRangeUtil.getAreaRole(px + dx, pz + dz, fixture.probeOwner[i], nearby, null));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object renderGrid() {
+        int i = nextProbe();
+        int px = fixture.probeX[i];
+        int pz = fixture.probeZ[i];
+        Long2ObjectMap<String> nearby = fixture.spatialIndex.getCentersWithin(
+                fixture.worldIndex, px, pz, chunkRangeUtil.getVisualRadius() + chunkRangeUtil.getAreaRadius()
+        );
+        return chunkRangeUtil.renderChunkGrid(px, pz, fixture.probeOwner[i], nearby, ChunkKey.of(fixture.worldIndex, ChunkKey.pack(px, pz)));
+    }
+}
@@ -0,0 +1,60 @@
+package com.lyttledev.lyttlechunkloader.benchmarks;
+
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.ClaimSpatialIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic claim set shared by the benchmarks.
+ * - Loader centers are spread randomly over a square that grows with the loader count (about 1 loader per 16 chunks),
+ *   so the local claim density stays realistic while the total number of claims changes.
+ * - Probes are random chunks inside that square, half of them next to an existing loader.
+ * - owners and positions are plain HashMaps with the same keys and values as ClaimRegistry and LoaderPositionIndex
+ *   keep internally; only spatialIndex is the production class.
+ */
+final class ClaimFixture {
+    static final int OWNERS = 500;
+    static final int PROBES = 1024;
+
+    final int worldIndex = ChunkKey.worldIndex("world");
+    final ClaimSpatialIndex spatialIndex = new ClaimSpatialIndex(1);
+    final Map<ChunkKey, String> owners = new HashMap<>();
+    final Map<ChunkKey, int[]> positions = new HashMap<>();
+    final ChunkKey[] centers;
+    final int[] probeX = new int[PROBES];
+    final int[] probeZ = new int[PROBES];
+    final String[] probeOwner = new String[PROBES];
+
+    ClaimFixture(int loaders) {
+        SplittableRandom random = new SplittableRandom(42);
+        int side = Math.max(16, (int) Math.sqrt(loaders * 16.0));
+        centers = new ChunkKey[loaders];
+        int placed = 0;
+        while (placed < loaders) {
+            int cx = random.nextInt(side) - side / 2;
+            int cz = random.nextInt(side) - side / 2;
+            ChunkKey center = ChunkKey.of(worldIndex, ChunkKey.pack(cx, cz));
+            if (owners.containsKey(center)) continue;
+            String owner = "owner-" + random.nextInt(OWNERS);
+            owners.put(center, owner);
+            positions.put(center, new int[]{cx * 16 + 8, 64, cz * 16 + 8});
+            spatialIndex.add(center, owner);
+            centers[placed++] = center;
+        }
+
+        for (int i = 0; i < PROBES; i++) {
+            if (i % 2 == 0) {
+                ChunkKey near = centers[random.nextInt(loaders)];
+                probeX[i] = near.getX() + random.nextInt(3) - 1;
+                probeZ[i] = near.getZ() + random.nextInt(3) - 1;
+            } else {
+                probeX[i] = random.nextInt(side) - side / 2;
+                probeZ[i] = random.nextInt(side) - side / 2;
+            }
+            probeOwner[i] = "owner-" + random.nextInt(OWNERS);
+        }
+    }
+}
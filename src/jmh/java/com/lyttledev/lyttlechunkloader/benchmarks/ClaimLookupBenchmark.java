@@ -0,0 +1,72 @@
+package com.lyttledev.lyttlechunkloader.benchmarks;
+
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim lookups on the real ClaimSpatialIndex, against 100 to 100k synthetic loaders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClaimLookupBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int loaders;
+
+    private final ChunkRangeUtil chunkRangeUtil = new ChunkRangeUtil(1, 4);
+    private ClaimFixture fixture;
+    private int probe = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new ClaimFixture(loaders);
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (ClaimFixture.PROBES - 1);
+        return probe;
+    }
+
+    /**
+     * ManagementHandler#claimChunkAt: does the placing player already cover this chunk?
+     */
+    @Benchmark
+    public boolean overlapCheck() {
+        int i = nextProbe();
+        return fixture.spatialIndex.isCoveredBy(fixture.worldIndex, fixture.probeX[i], fixture.probeZ[i], fixture.probeOwner[i]);
+    }
+
+    /**
+     * Claimed centers covering a chunk, then a lookup of each in two HashMaps keyed like the owner and position maps
+     * of ClaimRegistry and LoaderPositionIndex. Those classes need a running server, so this doesn't time their
+     * methods (nor the Location that LoaderPositionIndex#get allocates); only the spatial query is the real one.
+     */
+    @Benchmark
+    public void coveringCentersWithMapLookups(Blackhole blackhole) {
+        int i = nextProbe();
+        LongList centers = fixture.spatialIndex.getCentersCovering(fixture.worldIndex, fixture.probeX[i], fixture.probeZ[i]);
+        LongIterator it = centers.iterator();
+        while (it.hasNext()) {
+            ChunkKey key = ChunkKey.of(fixture.worldIndex, it.nextLong());
+            blackhole.consume(fixture.owners.get(key));
+            blackhole.consume(fixture.positions.get(key));
+        }
+    }
+
+    /**
+     * Claimed centers that can influence a 9x9 grid visualization.
+     */
+    @Benchmark
+    public Object visibleCenters() {
+        int i = nextProbe();
+        return fixture.spatialIndex.getCentersWithin(
+                fixture.worldIndex, fixture.probeX[i], fixture.probeZ[i], chunkRangeUtil.getVisualRadius() + chunkRangeUtil.getAreaRadius()
+        );
+    }
+}
@@ -1,10 +1,24 @@
 package com.lyttledev.lyttlechunkloader;
 
 import com.lyttledev.lyttlechunkloader.commands.LyttleChunkLoaderCommand;
+import com.lyttledev.lyttlechunkloader.handlers.ActivityHandler;
 import com.lyttledev.lyttlechunkloader.handlers.ManagementHandler;
 import com.lyttledev.lyttlechunkloader.handlers.PaymentHandler;
 import com.lyttledev.lyttlechunkloader.types.Configs;
+import com.lyttledev.lyttlechunkloader.utils.ChunkGridVisualizer;
+import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import com.lyttledev.lyttlechunkloader.utils.ChunkTicketManager;
+import com.lyttledev.lyttlechunkloader.utils.ClaimJournal;
+import com.lyttledev.lyttlechunkloader.utils.ClaimRegistry;
+import com.lyttledev.lyttlechunkloader.utils.DutyCycleScheduler;
+import com.lyttledev.lyttlechunkloader.utils.EconomyGateway;
+import com.lyttledev.lyttlechunkloader.utils.LoadGovernor;
+import com.lyttledev.lyttlechunkloader.utils.LoaderChunkMarker;
+import com.lyttledev.lyttlechunkloader.utils.LoaderCostSampler;
+import com.lyttledev.lyttlechunkloader.utils.LoaderPositionIndex;
+import com.lyttledev.lyttlechunkloader.utils.LoaderSnapshotScanner;
 import com.lyttledev.lyttlechunkloader.utils.MaterialExporter;
+import com.lyttledev.lyttlechunkloader.utils.PerformanceMetrics;
 import com.lyttledev.lyttlechunkloader.utils.WorldBorderChunkHighlighter;
 import com.lyttledev.lyttleutils.utils.communication.Console;
 import com.lyttledev.lyttleutils.utils.communication.Message;
@@ -16,16 +30,30 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 
 public final class LyttleChunkLoader extends JavaPlugin {
     public Economy economyImplementer;
+    public EconomyGateway economyGateway;
     public Configs config;
     public Console console;
     public Message message;
     public GlobalConfig global;
     public MiniMessage miniMessage = MiniMessage.miniMessage();
+    public PerformanceMetrics metrics = new PerformanceMetrics();
     public WorldBorderChunkHighlighter borderHighlighter;
     public PaymentHandler paymentHandler;
+    public ActivityHandler activityHandler; // null unless idle.enabled
+    public ClaimJournal claimJournal;
+    public ClaimRegistry claimRegistry;
+    public LoaderPositionIndex loaderPositions;
+    public LoaderChunkMarker chunkMarkers;
+    public LoaderSnapshotScanner snapshotScanner;
+    public ChunkTicketManager ticketManager;
+    public ChunkGridVisualizer gridVisualizer;
+    public LoadGovernor loadGovernor; // null unless governor.enabled
+    public DutyCycleScheduler dutyCycleScheduler; // null unless duty_cycle.enabled
+    public LoaderCostSampler costSampler; // null unless cost.enabled
 
     @Override
     public void onEnable() {
@@ -46,6 +74,32 @@ public final class LyttleChunkLoader extends JavaPlugin {
         this.console = new Console(this);
         this.message = new Message(this, config.messages, global);
         this.borderHighlighter = new WorldBorderChunkHighlighter(this);
+        this.economyGateway = new EconomyGateway(this);
+        if (config.getString("storage.engine").equalsIgnoreCase("journal")) {
+            this.claimJournal = new ClaimJournal(this);
+        }
+        this.claimRegistry = new ClaimRegistry(this);
+        this.loaderPositions = new LoaderPositionIndex(this);
+        this.chunkMarkers = new LoaderChunkMarker(this);
+        if (claimJournal != null) {
+            claimJournal.setSnapshotSource(() -> new ClaimJournal.State(
+                new HashMap<>(claimRegistry.getAllClaims()),
+                loaderPositions.getAllPositions()
+            ));
+        }
+        this.snapshotScanner = new LoaderSnapshotScanner(this);
+        this.ticketManager = new ChunkTicketManager(this, new ChunkRangeUtil(1, 4));
+        this.gridVisualizer = new ChunkGridVisualizer(this, new ChunkRangeUtil(1, 4));
+        if (config.getBoolean("governor.enabled")) {
+            this.loadGovernor = new LoadGovernor(this);
+            loadGovernor.start();
+        }
+        if (config.getBoolean("duty_cycle.enabled")) {
+            this.dutyCycleScheduler = new DutyCycleScheduler(this);
+        }
+        if (config.getBoolean("cost.enabled")) {
+            this.costSampler = new LoaderCostSampler(this);
+        }
 
         // Commands
         new LyttleChunkLoaderCommand(this);
@@ -53,6 +107,20 @@ public final class LyttleChunkLoader extends JavaPlugin {
         // Handlers
         this.paymentHandler = new PaymentHandler(this);
         new ManagementHandler(this);
+        if (config.getBoolean("idle.enabled")) {
+            this.activityHandler = new ActivityHandler(this);
+        }
+        registerMetrics();
+
+        // Restore the loaders of online owners (e.g. after a reload), and of offline owners when configured
+        getServer().getScheduler().runTask(this, () -> paymentHandler.restoreLoaders());
+
+        // Find the lodestone of legacy claims that were created before positions were recorded
+        getServer().getScheduler().runTask(this, () -> snapshotScanner.rebuildPositions(true, (found, missing) -> {
+            if (found > 0 || missing > 0) {
+                getLogger().info("Recorded " + found + " legacy chunk loader positions, " + missing + " claims have no loader.");
+            }
+        }));
 
         // Export Material list on plugin startup (only if file doesn't exist)
         File materialsFile = new File(getDataFolder(), "available_materials.txt");
@@ -66,6 +134,35 @@ public final class LyttleChunkLoader extends JavaPlugin {
         }
     }
 
+    @Override
+    public void onDisable() {
+        if (loadGovernor != null) loadGovernor.stop();
+        if (dutyCycleScheduler != null) dutyCycleScheduler.shutdown();
+        if (snapshotScanner != null) snapshotScanner.shutdown();
+        // Make sure no claim changes are lost
+        if (claimRegistry != null) claimRegistry.shutdown();
+        if (loaderPositions != null) loaderPositions.shutdown();
+        if (claimJournal != null) claimJournal.shutdown();
+        if (economyGateway != null) economyGateway.shutdown();
+    }
+
+    private void registerMetrics() {
+        metrics.registerGauge("tickets.active", ticketManager::getTicketCount);
+        metrics.registerGauge("tickets.pending", ticketManager::getPendingCount);
+        metrics.registerGauge("tickets.referenced", ticketManager::getReferencedCount);
+        metrics.registerGauge("loaders.evicted", ticketManager::getEvictedCount);
+        metrics.registerGauge("loaders.active", ticketManager::getActiveLoaderCount);
+        metrics.registerGaugeGroup("loaders.world", ticketManager::getActiveLoaderCountsByWorld);
+        metrics.registerGauge("loaders.suspended", ticketManager::getSuspendedCount);
+        metrics.registerGauge("loaders.shrunk", () -> ticketManager.isShrunk() ? 1 : 0);
+        if (activityHandler != null) metrics.registerGauge("loaders.idle", activityHandler::getIdleCount);
+        if (dutyCycleScheduler != null) metrics.registerGauge("loaders.resting", dutyCycleScheduler::getRestingCount);
+        metrics.registerGauge("claims.total", claimRegistry::getTotalClaimCount);
+        metrics.registerGauge("billing.scheduled", () -> paymentHandler.getBillingScheduler().getScheduledCount());
+        metrics.registerGauge("billing.backlog", () -> paymentHandler.getBillingScheduler().getBacklog());
+        metrics.registerGauge("billing.peak_players_per_tick", () -> paymentHandler.getBillingScheduler().getPeakTickBilled());
+    }
+
     private boolean setupEconomy() {
         if (getServer().getPluginManager().getPlugin("Vault") == null) {
             return false;
@@ -94,6 +191,10 @@ public final class LyttleChunkLoader extends JavaPlugin {
         if (!new File(getDataFolder(), messagesPath).exists())
             saveResource(messagesPath, false);
 
+        String positionsPath = "positions.yml";
+        if (!new File(getDataFolder(), positionsPath).exists())
+            saveResource(positionsPath, false);
+
         // Defaults:
         String defaultPath = "#defaults/";
         String defaultGeneralPath = defaultPath + configPath;
@@ -104,6 +205,9 @@ public final class LyttleChunkLoader extends JavaPlugin {
 
         String defaultMessagesPath = defaultPath + messagesPath;
         saveResource(defaultMessagesPath, true);
+
+        String defaultPositionsPath = defaultPath + positionsPath;
+        saveResource(defaultPositionsPath, true);
     }
 
     private void migrateConfig() {
@@ -112,12 +216,167 @@ public final class LyttleChunkLoader extends JavaPlugin {
         }
 
         switch (config.general.get("config_version").toString()) {
-//            case "0":
+            case "0":
+                // Migrate config entries.
+                config.general.set("storage.write_behind", config.defaultGeneral.get("storage.write_behind"));
+                config.general.set("storage.flush_delay_ticks", config.defaultGeneral.get("storage.flush_delay_ticks"));
+
+                // Update config version.
+                config.general.set("config_version", 1);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "1":
+                // Migrate config entries.
+                config.general.set("storage.engine", config.defaultGeneral.get("storage.engine"));
+                config.general.set("storage.journal_compact_records", config.defaultGeneral.get("storage.journal_compact_records"));
+
+                // Update config version.
+                config.general.set("config_version", 2);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "2":
+                // Migrate config entries.
+                config.general.set("billing.max_players_per_tick", config.defaultGeneral.get("billing.max_players_per_tick"));
+
+                // Update config version.
+                config.general.set("config_version", 3);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "3":
+                // Migrate config entries.
+                config.general.set("billing.mode", config.defaultGeneral.get("billing.mode"));
+                config.general.set("billing.settle_interval_seconds", config.defaultGeneral.get("billing.settle_interval_seconds"));
+
+                // Update config version.
+                config.general.set("config_version", 4);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "4":
+                // Migrate config entries.
+                config.general.set("tickets.max_changes_per_tick", config.defaultGeneral.get("tickets.max_changes_per_tick"));
+                config.general.set("tickets.max_millis_per_tick", config.defaultGeneral.get("tickets.max_millis_per_tick"));
+
+                // Update config version.
+                config.general.set("config_version", 5);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "5":
+                // Migrate config entries.
+                config.general.set("tickets.generate_chunks", config.defaultGeneral.get("tickets.generate_chunks"));
+
+                // Update config version.
+                config.general.set("config_version", 6);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "6":
+                // Migrate config entries.
+                config.general.set("loaders.keep_offline_active", config.defaultGeneral.get("loaders.keep_offline_active"));
+
+                // Update config version.
+                config.general.set("config_version", 7);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "7":
+                // Migrate config entries.
+                config.general.set("governor.enabled", config.defaultGeneral.get("governor.enabled"));
+                config.general.set("governor.shrink_mspt", config.defaultGeneral.get("governor.shrink_mspt"));
+                config.general.set("governor.shed_mspt", config.defaultGeneral.get("governor.shed_mspt"));
+                config.general.set("governor.recover_mspt", config.defaultGeneral.get("governor.recover_mspt"));
+                config.general.set("governor.check_interval_ticks", config.defaultGeneral.get("governor.check_interval_ticks"));
+                config.general.set("governor.shed_step", config.defaultGeneral.get("governor.shed_step"));
+
+                // Update config version.
+                config.general.set("config_version", 8);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "8":
+                // Migrate config entries.
+                config.general.set("idle.enabled", config.defaultGeneral.get("idle.enabled"));
+                config.general.set("idle.reduce_to", config.defaultGeneral.get("idle.reduce_to"));
+                config.general.set("idle.idle_minutes", config.defaultGeneral.get("idle.idle_minutes"));
+                config.general.set("idle.sample_interval_seconds", config.defaultGeneral.get("idle.sample_interval_seconds"));
+
+                // Update config version.
+                config.general.set("config_version", 9);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "9":
+                // Migrate config entries.
+                config.general.set("duty_cycle.enabled", config.defaultGeneral.get("duty_cycle.enabled"));
+                config.general.set("duty_cycle.active_seconds", config.defaultGeneral.get("duty_cycle.active_seconds"));
+                config.general.set("duty_cycle.period_seconds", config.defaultGeneral.get("duty_cycle.period_seconds"));
+
+                // Update config version.
+                config.general.set("config_version", 10);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "10":
+                // Migrate config entries.
+                config.general.set("limits.max_loaders_per_owner", config.defaultGeneral.get("limits.max_loaders_per_owner"));
+                config.general.set("limits.tiers", config.defaultGeneral.get("limits.tiers"));
+                config.general.set("limits.max_chunks", config.defaultGeneral.get("limits.max_chunks"));
+                config.general.set("limits.max_chunks_per_world", config.defaultGeneral.get("limits.max_chunks_per_world"));
+
+                // Update config version.
+                config.general.set("config_version", 11);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "11":
+                // Migrate config entries.
+                config.general.set("cost.enabled", config.defaultGeneral.get("cost.enabled"));
+                config.general.set("cost.sample_interval_seconds", config.defaultGeneral.get("cost.sample_interval_seconds"));
+                config.general.set("cost.loaders_per_tick", config.defaultGeneral.get("cost.loaders_per_tick"));
+                config.general.set("cost.entity_weight", config.defaultGeneral.get("cost.entity_weight"));
+                config.general.set("cost.tile_entity_weight", config.defaultGeneral.get("cost.tile_entity_weight"));
+                config.general.set("cost.scale_billing", config.defaultGeneral.get("cost.scale_billing"));
+                config.general.set("cost.billing_baseline", config.defaultGeneral.get("cost.billing_baseline"));
+                config.general.set("cost.min_billing_factor", config.defaultGeneral.get("cost.min_billing_factor"));
+
+                // Update config version.
+                config.general.set("config_version", 12);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+            case "12":
+                // Migrate config entries.
+                config.general.set("cost.max_billing_factor", config.defaultGeneral.get("cost.max_billing_factor"));
+                config.general.set("cost.billing_smoothing", config.defaultGeneral.get("cost.billing_smoothing"));
+
+                // Update config version.
+                config.general.set("config_version", 13);
+
+                // Recheck if the config is fully migrated.
+                migrateConfig();
+                break;
+//            case "13":
 //                // Migrate config entries.
 //                // config.general.set("x", config.defaultGeneral.get("x"));
 //
 //                // Update config version.
-//                config.general.set("config_version", 1);
+//                config.general.set("config_version", 14);
 //
 //                // Recheck if the config is fully migrated.
 //                migrateConfig();
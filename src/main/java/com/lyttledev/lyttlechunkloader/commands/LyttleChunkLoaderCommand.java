@@ -1,13 +1,20 @@
 package com.lyttledev.lyttlechunkloader.commands;
 
 import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.LoaderCostSampler;
+import com.lyttledev.lyttlechunkloader.utils.PerformanceMetrics;
 import net.kyori.adventure.text.Component;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 
 public class LyttleChunkLoaderCommand implements CommandExecutor, TabCompleter {
     private final LyttleChunkLoader plugin;
@@ -31,17 +38,100 @@ public class LyttleChunkLoaderCommand implements CommandExecutor, TabCompleter {
 
         if (args.length == 1) {
             if (args[0].equalsIgnoreCase("reload")) {
+                // Write pending claim changes first, so the reload doesn't bring back stale data
+                plugin.claimRegistry.flush();
+                plugin.loaderPositions.flush();
                 plugin.config.reload();
+                Map<ChunkKey, String> previousClaims = new HashMap<>(plugin.claimRegistry.getAllClaims());
+                if (plugin.claimJournal != null) plugin.claimJournal.reload();
+                plugin.claimRegistry.load();
+                plugin.loaderPositions.load();
+                // Release the tickets of claims that are gone, activate the new ones
+                plugin.paymentHandler.reconcileClaims(previousClaims);
                 plugin.message.sendMessageRaw(sender, Component.text("The config has been reloaded"));
             }
+
+            if (args[0].equalsIgnoreCase("audit")) {
+                plugin.message.sendMessageRaw(sender, Component.text("Scanning all claimed chunks for chunk loaders..."));
+                plugin.snapshotScanner.rebuildPositions(false, (found, missing) ->
+                    plugin.message.sendMessageRaw(sender, Component.text(
+                        "Audit complete: " + found + " chunk loaders found, " + missing + " claims without a chunk loader."
+                    ))
+                );
+            }
+
+            if (args[0].equalsIgnoreCase("stats")) {
+                sendStats(sender);
+            }
+
+            if (args[0].equalsIgnoreCase("top")) {
+                sendTop(sender);
+            }
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats") && args[1].equalsIgnoreCase("reset")) {
+            plugin.metrics.reset();
+            plugin.message.sendMessageRaw(sender, Component.text("The statistics have been reset"));
         }
         return true;
     }
 
+    private void sendStats(CommandSender sender) {
+        PerformanceMetrics.Snapshot snapshot = plugin.metrics.snapshot();
+        plugin.message.sendMessageRaw(sender, Component.text("LyttleChunkLoader statistics:"));
+        for (Map.Entry<String, Number> gauge : snapshot.gauges.entrySet()) {
+            plugin.message.sendMessageRaw(sender, Component.text(" " + gauge.getKey() + ": " + gauge.getValue()));
+        }
+        for (Map.Entry<String, Long> counter : snapshot.counters.entrySet()) {
+            plugin.message.sendMessageRaw(sender, Component.text(" " + counter.getKey() + ": " + counter.getValue()));
+        }
+        for (Map.Entry<String, PerformanceMetrics.TimerSnapshot> timer : snapshot.timers.entrySet()) {
+            PerformanceMetrics.TimerSnapshot value = timer.getValue();
+            plugin.message.sendMessageRaw(sender, Component.text(String.format(Locale.ROOT,
+                " %s: %d runs, avg %.3f ms, max %.3f ms", timer.getKey(), value.count, value.getAverageMillis(), value.getMaxMillis()
+            )));
+        }
+    }
+
+    private void sendTop(CommandSender sender) {
+        if (plugin.costSampler == null) {
+            plugin.message.sendMessageRaw(sender, Component.text("Loader cost sampling is disabled, enable cost.enabled in config.yml."));
+            return;
+        }
+        plugin.message.sendMessageRaw(sender, Component.text("Most expensive chunk loaders (entities, tile entities, score):"));
+        for (Map.Entry<ChunkKey, LoaderCostSampler.LoaderCost> entry : plugin.costSampler.getTopLoaders(10)) {
+            LoaderCostSampler.LoaderCost cost = entry.getValue();
+            plugin.message.sendMessageRaw(sender, Component.text(String.format(Locale.ROOT,
+                " %s (%s): %d, %d, %.1f", entry.getKey(), getOwnerName(plugin.claimRegistry.getOwner(entry.getKey())),
+                cost.entities, cost.tileEntities, cost.score
+            )));
+        }
+        plugin.message.sendMessageRaw(sender, Component.text("Most expensive owners (total score):"));
+        for (Map.Entry<String, Double> entry : plugin.costSampler.getTopOwners(10)) {
+            plugin.message.sendMessageRaw(sender, Component.text(String.format(Locale.ROOT,
+                " %s: %.1f", getOwnerName(entry.getKey()), entry.getValue()
+            )));
+        }
+    }
+
+    private String getOwnerName(String ownerKey) {
+        if (ownerKey == null) return "unclaimed";
+        try {
+            String name = plugin.economyGateway.getOfflinePlayer(UUID.fromString(ownerKey)).getName();
+            return name != null ? name : ownerKey;
+        } catch (IllegalArgumentException e) {
+            return ownerKey;
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command cmd, String label, String[] args) {
         if (args.length == 1) {
-            return List.of("reload");
+            return List.of("reload", "audit", "stats", "top");
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return List.of("reset");
         }
 
         return List.of();
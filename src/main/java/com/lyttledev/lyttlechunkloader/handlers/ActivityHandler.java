@@ -0,0 +1,248 @@
+package com.lyttledev.lyttlechunkloader.handlers;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import com.lyttledev.lyttlechunkloader.utils.ChunkTicketManager;
+import com.lyttledev.lyttlechunkloader.utils.ClaimRegistry;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.Furnace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.util.*;
+
+/**
+ * Detects chunk loaders whose area is idle and drops their tickets until something happens again.
+ * - Redstone changes and creature spawns in loaded areas mark their chunk as active.
+ *   Recording is one hash lookup per event; chunks that no loader covers are ignored.
+ * - Hoppers and furnaces are not watched per event (listening to inventory moves disables Paper's hopper
+ *   optimizations). Instead, every sample hashes the entity count and container contents of the loaded chunks
+ *   of each running loader; a different hash than the last sample counts as activity.
+ * - The listeners are only registered when idle.enabled, as this handler is only created then.
+ * - Every idle.sample_interval_seconds, loaders without any activity in their area count one idle sample;
+ *   after idle.idle_minutes worth of samples they are reduced to their center chunk (idle.reduce_to: center)
+ *   or suspended completely (idle.reduce_to: none).
+ * - Idle loaders are woken up by activity in their area, by their owner joining, or by their owner being in their area.
+ */
+public class ActivityHandler implements Listener {
+    private final LyttleChunkLoader plugin;
+    private final ClaimRegistry claimRegistry;
+    private final ChunkTicketManager ticketManager;
+    private final ChunkRangeUtil chunkRangeUtil;
+    private final boolean suspendIdle;
+    private final int samplesUntilIdle;
+    // World index -> packed chunks with activity since the last sample
+    private final Int2ObjectMap<LongSet> activeChunks = new Int2ObjectOpenHashMap<>();
+    // Loader center -> consecutive samples without activity
+    private Map<ChunkKey, Integer> idleSamples = new HashMap<>();
+    // Loader center -> hash of its area at the last sample
+    private Map<ChunkKey, Long> areaStates = new HashMap<>();
+    // Loaders that were dropped for being idle
+    private final Set<ChunkKey> idleLoaders = new HashSet<>();
+    // World index -> packed chunk -> number of idle loaders covering it
+    private final Int2ObjectMap<Long2IntOpenHashMap> idleAreaChunks = new Int2ObjectOpenHashMap<>();
+
+    public ActivityHandler(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.claimRegistry = plugin.claimRegistry;
+        this.ticketManager = plugin.ticketManager;
+        this.chunkRangeUtil = new ChunkRangeUtil(1, 4);
+        this.suspendIdle = plugin.config.getString("idle.reduce_to").equalsIgnoreCase("none");
+        int sampleSeconds = Math.max(1, plugin.config.getInt("idle.sample_interval_seconds"));
+        this.samplesUntilIdle = Math.max(1, (plugin.config.getInt("idle.idle_minutes") * 60) / sampleSeconds);
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sample, sampleSeconds * 20L, sampleSeconds * 20L);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockRedstone(BlockRedstoneEvent event) {
+        recordActivity(event.getBlock().getWorld(), event.getBlock().getX() >> 4, event.getBlock().getZ() >> 4);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCreatureSpawn(CreatureSpawnEvent event) {
+        Location location = event.getLocation();
+        recordActivity(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (idleLoaders.isEmpty()) return;
+        for (ChunkKey centerKey : claimRegistry.getClaims(event.getPlayer().getUniqueId().toString())) {
+            if (idleLoaders.contains(centerKey)) wake(centerKey);
+        }
+    }
+
+    public int getIdleCount() {
+        return idleLoaders.size();
+    }
+
+    private void recordActivity(World world, int cx, int cz) {
+        if (world == null) return;
+        int worldIndex = ChunkKey.indexOf(world);
+        long chunk = ChunkKey.pack(cx, cz);
+        Long2IntOpenHashMap idleChunks = idleAreaChunks.get(worldIndex);
+        if (idleChunks != null && idleChunks.containsKey(chunk)) wakeCovering(worldIndex, cx, cz);
+        if (!ticketManager.isReferenced(worldIndex, chunk)) return;
+        activeChunks.computeIfAbsent(worldIndex, i -> new LongOpenHashSet()).add(chunk);
+    }
+
+    private void sample() {
+        long start = System.nanoTime();
+        forgetEnded();
+        wakeForNearbyOwners();
+
+        Map<ChunkKey, Integer> samples = new HashMap<>();
+        Map<ChunkKey, Long> states = new HashMap<>();
+        for (ChunkKey centerKey : ticketManager.getRunningLoaders()) {
+            boolean idle = idleLoaders.contains(centerKey);
+            // Reduced idle loaders only keep their center chunk, so only that one is compared
+            long state = sampleAreaState(centerKey, idle);
+            Long previous = areaStates.get(centerKey);
+            boolean changed = previous != null && previous != state;
+            if (idle) {
+                states.put(centerKey, state);
+                if (changed) wake(centerKey);
+                continue;
+            }
+            if (previous == null || changed || hadActivity(centerKey)) {
+                states.put(centerKey, state);
+                continue;
+            }
+            int idleCount = idleSamples.getOrDefault(centerKey, 0) + 1;
+            if (idleCount >= samplesUntilIdle) {
+                // Not kept in states: the next sample only sees the center chunk, which must not count as activity
+                drop(centerKey);
+            } else {
+                samples.put(centerKey, idleCount);
+                states.put(centerKey, state);
+            }
+        }
+        // Loaders that are gone or had activity start over
+        idleSamples = samples;
+        areaStates = states;
+        activeChunks.clear();
+        plugin.metrics.recordSince("idle.sample", start);
+    }
+
+    /**
+     * Hashes what is going on in the loaded chunks of a loader area: the number of entities, the contents of every
+     * container (hoppers, chests, furnaces...) and the progress of every furnace. Chunks are never loaded for this.
+     */
+    private long sampleAreaState(ChunkKey centerKey, boolean centerOnly) {
+        World world = centerKey.getWorld();
+        if (world == null) return 0L;
+        long hash = 1L;
+        LongIterator it = centerOnly
+            ? LongSets.singleton(centerKey.getPacked()).iterator()
+            : chunkRangeUtil.getAreaChunks(centerKey.getX(), centerKey.getZ()).iterator();
+        while (it.hasNext()) {
+            long packed = it.nextLong();
+            int cx = ChunkKey.unpackX(packed);
+            int cz = ChunkKey.unpackZ(packed);
+            if (!world.isChunkLoaded(cx, cz)) {
+                hash = 31L * hash;
+                continue;
+            }
+            Chunk chunk = world.getChunkAt(cx, cz);
+            hash = 31L * hash + chunk.getEntities().length;
+            for (BlockState tileEntity : chunk.getTileEntities(false)) {
+                if (tileEntity instanceof Furnace) hash = 31L * hash + ((Furnace) tileEntity).getCookTime();
+                if (tileEntity instanceof Container) hash = 31L * hash + Arrays.hashCode(((Container) tileEntity).getInventory().getContents());
+            }
+        }
+        return hash;
+    }
+
+    private boolean hadActivity(ChunkKey centerKey) {
+        LongSet active = activeChunks.get(centerKey.getWorldIndex());
+        if (active == null) return false;
+        LongIterator it = chunkRangeUtil.getAreaChunks(centerKey.getX(), centerKey.getZ()).iterator();
+        while (it.hasNext()) {
+            if (active.contains(it.nextLong())) return true;
+        }
+        return false;
+    }
+
+    private void drop(ChunkKey centerKey) {
+        boolean dropped = suspendIdle ? ticketManager.suspend(centerKey, ChunkTicketManager.SuspendReason.IDLE) : ticketManager.setReduced(centerKey, true);
+        if (!dropped) return;
+        idleLoaders.add(centerKey);
+        adjustIdleArea(centerKey, 1);
+        plugin.metrics.increment("idle.dropped");
+    }
+
+    private void wake(ChunkKey centerKey) {
+        if (!idleLoaders.remove(centerKey)) return;
+        adjustIdleArea(centerKey, -1);
+        if (suspendIdle) ticketManager.resume(centerKey, ChunkTicketManager.SuspendReason.IDLE);
+        else ticketManager.setReduced(centerKey, false);
+        plugin.metrics.increment("idle.woken");
+    }
+
+    private void wakeCovering(int worldIndex, int cx, int cz) {
+        LongIterator it = claimRegistry.getSpatialIndex().getCentersCovering(worldIndex, cx, cz).iterator();
+        while (it.hasNext()) {
+            ChunkKey centerKey = ChunkKey.of(worldIndex, it.nextLong());
+            if (idleLoaders.contains(centerKey)) wake(centerKey);
+        }
+    }
+
+    /**
+     * Wakes the idle loaders whose owner is standing in their area.
+     */
+    private void wakeForNearbyOwners() {
+        if (idleLoaders.isEmpty()) return;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            ChunkKey playerChunk = ChunkKey.of(player.getLocation());
+            String playerKey = player.getUniqueId().toString();
+            LongIterator it = claimRegistry.getSpatialIndex().getCentersCovering(playerChunk.getWorldIndex(), playerChunk.getX(), playerChunk.getZ()).iterator();
+            while (it.hasNext()) {
+                ChunkKey centerKey = ChunkKey.of(playerChunk.getWorldIndex(), it.nextLong());
+                if (idleLoaders.contains(centerKey) && playerKey.equals(claimRegistry.getOwner(centerKey))) wake(centerKey);
+            }
+        }
+    }
+
+    /**
+     * Forgets idle loaders that were deactivated (removed, owner left) or restored by someone else in the meantime.
+     */
+    private void forgetEnded() {
+        Iterator<ChunkKey> it = idleLoaders.iterator();
+        while (it.hasNext()) {
+            ChunkKey centerKey = it.next();
+            boolean stillIdle = suspendIdle ? ticketManager.isSuspended(centerKey, ChunkTicketManager.SuspendReason.IDLE) : ticketManager.isReduced(centerKey);
+            if (stillIdle) continue;
+            it.remove();
+            adjustIdleArea(centerKey, -1);
+        }
+    }
+
+    private void adjustIdleArea(ChunkKey centerKey, int delta) {
+        Long2IntOpenHashMap counts = idleAreaChunks.computeIfAbsent(centerKey.getWorldIndex(), i -> new Long2IntOpenHashMap());
+        LongIterator it = chunkRangeUtil.getAreaChunks(centerKey.getX(), centerKey.getZ()).iterator();
+        while (it.hasNext()) {
+            long chunk = it.nextLong();
+            if (counts.addTo(chunk, delta) + delta <= 0) counts.remove(chunk);
+        }
+        if (counts.isEmpty()) idleAreaChunks.remove(centerKey.getWorldIndex());
+    }
+}
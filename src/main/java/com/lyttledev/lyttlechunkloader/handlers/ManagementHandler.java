@@ -1,9 +1,13 @@
 package com.lyttledev.lyttlechunkloader.handlers;
 
 import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
 import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import com.lyttledev.lyttlechunkloader.utils.ClaimRegistry;
 import com.lyttledev.lyttlechunkloader.utils.DoubleChunkLoaderEnforcer;
-import com.lyttledev.lyttleutils.types.YamlConfig;
+import com.lyttledev.lyttlechunkloader.utils.LoaderChunkMarker;
+import com.lyttledev.lyttlechunkloader.utils.LoaderPositionIndex;
+import com.lyttledev.lyttlechunkloader.utils.LoaderQuota;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.*;
@@ -14,58 +18,34 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
 
 import java.util.*;
 
 public class ManagementHandler implements Listener {
     private final LyttleChunkLoader plugin;
-    private final YamlConfig chunkConfig;
+    private final ClaimRegistry claimRegistry;
     private final ChunkRangeUtil chunkRangeUtil;
     private final DoubleChunkLoaderEnforcer doubleLoaderEnforcer;
     private final PaymentHandler paymentHandler;
+    private final LoaderPositionIndex loaderPositions;
+    private final LoaderQuota loaderQuota;
 
     public ManagementHandler(LyttleChunkLoader plugin) {
         this.plugin = plugin;
-        this.chunkConfig = plugin.config.chunks;
+        this.claimRegistry = plugin.claimRegistry;
         this.chunkRangeUtil = new ChunkRangeUtil(1, 4);
         this.doubleLoaderEnforcer = new DoubleChunkLoaderEnforcer(plugin, chunkRangeUtil, 1);
         this.paymentHandler = plugin.paymentHandler;
+        this.loaderPositions = plugin.loaderPositions;
+        this.loaderQuota = new LoaderQuota(plugin);
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
-    private String getChunkKey(Location location) {
-        return chunkRangeUtil.getChunkKey(location);
-    }
-
     private String getPlayerKey(Player player) {
         return player.getUniqueId().toString();
     }
 
-    private List<String> getPlayerChunks(Player player) {
-        String playerKey = getPlayerKey(player);
-        List<String> chunkList = chunkConfig.getStringList(playerKey);
-        return chunkList != null ? chunkList : new ArrayList<>();
-    }
-
-    private Map<String, Set<String>> getAllClaimsByPlayer() {
-        Map<String, Set<String>> map = new HashMap<>();
-        String[] allPlayers = chunkConfig.getKeys("");
-        if (allPlayers != null) {
-            for (String playerKey : allPlayers) {
-                List<String> chunks = chunkConfig.getStringList(playerKey);
-                if (chunks != null && !chunks.isEmpty()) {
-                    map.put(playerKey, new HashSet<>(chunks));
-                }
-            }
-        }
-        return map;
-    }
-
-    private void savePlayerChunks(Player player, List<String> chunkList) {
-        String playerKey = getPlayerKey(player);
-        chunkConfig.set(playerKey, chunkList);
-    }
-
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent event) {
         Block block = event.getBlockPlaced();
@@ -89,17 +69,36 @@ public class ManagementHandler implements Listener {
 
         if (!isLoader) return;
 
+        // Refuse before the enforcer runs, it removes the other loaders around this one
+        ChunkKey centerKey = ChunkKey.of(baseLocation);
+        if (!plugin.ticketManager.canActivate(centerKey)) {
+            event.setCancelled(true);
+            player.sendMessage(Component.text("Chunk loaders can't be placed where the surrounding chunks haven't been generated yet.", NamedTextColor.RED));
+            return;
+        }
+        String playerKey = getPlayerKey(player);
+        int limit = loaderQuota.getLimit(player);
+        // Placing inside one of your own areas doesn't claim anything new
+        if (limit >= 0 && claimRegistry.getClaimCount(playerKey) >= limit
+                && !claimRegistry.getSpatialIndex().isCoveredBy(centerKey.getWorldIndex(), centerKey.getX(), centerKey.getZ(), playerKey)) {
+            event.setCancelled(true);
+            player.sendMessage(Component.text("You have reached your limit of " + limit + " chunk loaders. Remove one of your chunk loaders to place a new one.", NamedTextColor.RED));
+            return;
+        }
+
         doubleLoaderEnforcer.enforceUniqueDoubleChunkLoaderOnCreate(baseLocation, player);
 
         // Only claim if NOT already claimed (prevents double claim and double charge)
         boolean claimed = claimChunkAt(baseLocation, player);
         if (claimed) {
-            boolean paid = paymentHandler.chargeAndStartProcessOnCreate(player, getChunkKey(baseLocation), true);
-            if (!paid) {
-                removeDoubleChunkLoader(baseLocation);
-                removeChunkClaim(baseLocation, player); // also ensures chunk is unloaded
-                player.sendMessage(Component.text("You could not afford a chunk loader here. The block was removed.", NamedTextColor.RED));
-            }
+            Location lodestoneLocation = baseLocation;
+            paymentHandler.chargeAndStartProcessOnCreate(player, centerKey, true, paid -> {
+                if (!paid) {
+                    removeDoubleChunkLoader(lodestoneLocation);
+                    removeChunkClaim(lodestoneLocation, player); // also ensures chunk is unloaded
+                    player.sendMessage(Component.text("You could not afford a chunk loader here. The block was removed.", NamedTextColor.RED));
+                }
+            });
         }
     }
 
@@ -130,6 +129,35 @@ public class ManagementHandler implements Listener {
         removeChunkClaim(baseLocation, player); // always remove/unload, also if not owned
     }
 
+    /**
+     * Lazily validates claimed chunks as they load: the chunk's marker points at the lodestone, so a single block
+     * lookup tells whether the loader is still there. Claims whose loader is gone are removed.
+     */
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (event.isNewChunk()) return;
+        Chunk chunk = event.getChunk();
+        ChunkKey chunkKey = ChunkKey.of(chunk);
+        String ownerKey = claimRegistry.getOwner(chunkKey);
+        if (ownerKey == null) return;
+        if (plugin.chunkMarkers.validate(chunk, chunkKey, ownerKey) != LoaderChunkMarker.Validation.ORPHANED) return;
+        // Remove the claim after the chunk finished loading
+        Bukkit.getScheduler().runTask(plugin, () -> removeOrphanedClaim(chunkKey, ownerKey));
+    }
+
+    private void removeOrphanedClaim(ChunkKey chunkKey, String ownerKey) {
+        if (!ownerKey.equals(claimRegistry.getOwner(chunkKey))) return;
+        claimRegistry.removeClaim(chunkKey);
+        loaderPositions.remove(chunkKey);
+        try {
+            paymentHandler.onChunkLoaderRemoved(UUID.fromString(ownerKey), chunkKey);
+        } catch (IllegalArgumentException e) {
+            paymentHandler.unloadChunkAndSurrounding(chunkKey);
+        }
+        plugin.metrics.increment("claims.orphans_removed");
+        plugin.getLogger().info("Removed the claim on " + chunkKey + ", its chunk loader is gone.");
+    }
+
     @EventHandler
     public void onPlayerInteract(PlayerInteractEvent event) {
         if (event.getClickedBlock() == null || event.getAction() != org.bukkit.event.block.Action.RIGHT_CLICK_BLOCK) {
@@ -154,17 +182,12 @@ public class ManagementHandler implements Listener {
     }
 
     private void sendVisualization(Location lodestoneLocation, Player player) {
-        String key = getChunkKey(lodestoneLocation);
-        List<String> chunkList = getPlayerChunks(player);
-
-        if (chunkList.contains(key)) {
-            chunkRangeUtil.sendChunkGridVisualizer(
-                lodestoneLocation,
-                player,
-                getPlayerKey(player),
-                getAllClaimsByPlayer(),
-                key
-            );
+        ChunkKey chunkKey = ChunkKey.of(lodestoneLocation);
+
+        if (getPlayerKey(player).equals(claimRegistry.getOwner(chunkKey))) {
+            // The owner is using this loader, keep it over others when a chunk cap is reached
+            plugin.ticketManager.touch(chunkKey);
+            plugin.gridVisualizer.send(lodestoneLocation, player, true);
             plugin.borderHighlighter.sendBorders(player, lodestoneLocation, 2, 100);
         } else {
             player.sendMessage(Component.text("This chunk is not claimed by you.", NamedTextColor.RED));
@@ -181,25 +204,22 @@ public class ManagementHandler implements Listener {
             return false;
         }
 
-        Chunk centerChunk = lodestoneLocation.getChunk();
-        List<String> chunkList = getPlayerChunks(player);
-
-        Set<String> areaKeys = chunkRangeUtil.getAreaChunkKeys(
-                lodestoneLocation.getWorld(),
-                centerChunk.getX(),
-                centerChunk.getZ()
-        );
-        for (String key : areaKeys) {
-            if (chunkList.contains(key)) {
-                // Already claimed by this player
-                sendVisualization(lodestoneLocation, player);
-                return false;
-            }
+        ChunkKey centerKey = ChunkKey.of(lodestoneLocation);
+        String playerKey = getPlayerKey(player);
+
+        if (claimRegistry.getSpatialIndex().isCoveredBy(centerKey.getWorldIndex(), centerKey.getX(), centerKey.getZ(), playerKey)) {
+            // Already claimed by this player
+            sendVisualization(lodestoneLocation, player);
+            return false;
         }
 
-        String key = getChunkKey(lodestoneLocation);
-        chunkList.add(key);
-        savePlayerChunks(player, chunkList);
+        if (!claimRegistry.addClaim(playerKey, centerKey)) {
+            // Center is still claimed by someone else
+            sendVisualization(lodestoneLocation, player);
+            return false;
+        }
+        loaderPositions.record(centerKey, lodestoneLocation);
+        plugin.chunkMarkers.mark(lodestoneLocation, playerKey);
 
         sendVisualization(lodestoneLocation, player);
         player.playSound(lodestoneLocation, Sound.ENTITY_PLAYER_LEVELUP, SoundCategory.MASTER, 1.0f, 1.0f);
@@ -207,15 +227,15 @@ public class ManagementHandler implements Listener {
     }
 
     private void removeChunkClaim(Location lodestoneLocation, Player player) {
-        String key = getChunkKey(lodestoneLocation);
-        List<String> chunkList = getPlayerChunks(player);
-        if (chunkList.contains(key)) {
-            chunkList.remove(key);
-            savePlayerChunks(player, chunkList);
-            paymentHandler.onChunkLoaderRemoved(player, key);
+        ChunkKey chunkKey = ChunkKey.of(lodestoneLocation);
+        if (getPlayerKey(player).equals(claimRegistry.getOwner(chunkKey))) {
+            claimRegistry.removeClaim(chunkKey);
+            loaderPositions.remove(chunkKey);
+            plugin.chunkMarkers.unmark(lodestoneLocation.getChunk());
+            paymentHandler.onChunkLoaderRemoved(player, chunkKey);
         } else {
             // Still ensure unload if not owned (safety)
-            paymentHandler.unloadChunkAndSurrounding(key);
+            paymentHandler.unloadChunkAndSurrounding(chunkKey);
         }
     }
 
@@ -1,41 +1,75 @@
 package com.lyttledev.lyttlechunkloader.handlers;
 
 import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttlechunkloader.utils.BillingLedger;
+import com.lyttledev.lyttlechunkloader.utils.BillingScheduler;
 import com.lyttledev.lyttlechunkloader.utils.ChunkRangeUtil;
+import com.lyttledev.lyttlechunkloader.utils.ChunkTicketManager;
+import com.lyttledev.lyttlechunkloader.utils.ClaimRegistry;
 import com.lyttledev.lyttlechunkloader.utils.DoubleChunkLoaderEnforcer;
-import com.lyttledev.lyttleutils.types.YamlConfig;
-import net.milkbowl.vault.economy.Economy;
+import com.lyttledev.lyttlechunkloader.utils.EconomyGateway;
+import com.lyttledev.lyttlechunkloader.utils.LoaderPositionIndex;
+import com.lyttledev.lyttlechunkloader.utils.WriteBehindYamlFile;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginDisableEvent;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class PaymentHandler implements Listener {
     private final LyttleChunkLoader plugin;
-    private final YamlConfig chunkConfig;
+    private final ClaimRegistry claimRegistry;
     private final ChunkRangeUtil chunkRangeUtil;
-    private final Set<String> loadedChunkKeys = Collections.synchronizedSet(new HashSet<>());
+    private final ChunkTicketManager ticketManager;
     private final Set<UUID> loadedPlayers = Collections.synchronizedSet(new HashSet<>());
     private static final int PAYMENT_CHECK_INTERVAL = 10;
     private static final double DUTY_PER_CHUNK = 30.0;
-    private final Economy economy;
-    private final Map<UUID, BukkitTask> playerPaymentTasks = Collections.synchronizedMap(new HashMap<>());
+    private final EconomyGateway economyGateway;
+    private final BillingScheduler billingScheduler;
+    private final BillingLedger ledger; // null in direct billing mode
+    private final WriteBehindYamlFile ledgerFile; // null in direct billing mode
     private final DoubleChunkLoaderEnforcer doubleLoaderEnforcer;
+    private final LoaderPositionIndex loaderPositions;
+    private final boolean keepOfflineActive;
+    private final boolean scaleBilling;
 
     public PaymentHandler(LyttleChunkLoader plugin) {
         this.plugin = plugin;
-        this.chunkConfig = plugin.config.chunks;
+        this.claimRegistry = plugin.claimRegistry;
         this.chunkRangeUtil = new ChunkRangeUtil(1, 4);
-        this.economy = plugin.economyImplementer;
+        this.economyGateway = plugin.economyGateway;
+        this.loaderPositions = plugin.loaderPositions;
+        this.ticketManager = plugin.ticketManager;
+        this.keepOfflineActive = plugin.config.getBoolean("loaders.keep_offline_active");
+        this.scaleBilling = plugin.costSampler != null && plugin.config.getBoolean("cost.scale_billing");
         this.doubleLoaderEnforcer = new DoubleChunkLoaderEnforcer(plugin, chunkRangeUtil, 1);
+        this.billingScheduler = new BillingScheduler(
+            plugin,
+            PAYMENT_CHECK_INTERVAL * 20,
+            plugin.config.getInt("billing.max_players_per_tick"),
+            this::checkPaymentsForPlayer
+        );
+        if (plugin.config.getString("billing.mode").equalsIgnoreCase("ledger")) {
+            this.ledgerFile = new WriteBehindYamlFile(plugin, "ledger.yml", this::snapshotLedger, plugin.config.getInt("storage.flush_delay_ticks"));
+            this.ledger = new BillingLedger(plugin.config.getInt("billing.settle_interval_seconds") * 1000L, ledgerFile::markDirty);
+            restoreLedger();
+        } else {
+            this.ledgerFile = null;
+            this.ledger = null;
+        }
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
@@ -51,63 +85,181 @@ public class PaymentHandler implements Listener {
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         UUID playerUUID = player.getUniqueId();
-        List<String> playerChunks = chunkConfig.getStringList(playerUUID.toString());
-        if (playerChunks != null && !playerChunks.isEmpty()) {
+        Set<ChunkKey> playerChunks = claimRegistry.getClaims(playerUUID.toString());
+        if (!playerChunks.isEmpty()) {
             loadedPlayers.add(playerUUID);
-            for (String chunkKey : playerChunks) {
+            for (ChunkKey chunkKey : playerChunks) {
                 loadChunkAndSurrounding(chunkKey);
+                // Already active with loaders.keep_offline_active; the owner is back, so evict it last
+                ticketManager.touch(chunkKey);
             }
             ensurePaymentProcess(player);
             player.sendMessage("§aWelcome back! Your chunk loaders have been reloaded.");
         }
     }
 
+    /**
+     * Restores all loaders after startup or a server reload, in one pass over the claim registry.
+     * Loaders of online owners (and of offline owners with loaders.keep_offline_active) are activated right away;
+     * their tickets are applied gradually by the ChunkTicketManager budget, their billing is spread by the BillingScheduler.
+     */
+    public void restoreLoaders() {
+        int owners = 0;
+        int loaders = 0;
+        for (String ownerKey : new ArrayList<>(claimRegistry.getOwners())) {
+            UUID playerUUID;
+            try {
+                playerUUID = UUID.fromString(ownerKey);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (!keepOfflineActive && Bukkit.getPlayer(playerUUID) == null) continue;
+
+            loadedPlayers.add(playerUUID);
+            for (ChunkKey chunkKey : claimRegistry.getClaims(ownerKey)) {
+                loadChunkAndSurrounding(chunkKey);
+                loaders++;
+            }
+            ensurePaymentProcess(playerUUID);
+            owners++;
+        }
+        if (loaders > 0) {
+            plugin.getLogger().info("Restored " + loaders + " chunk loaders of " + owners + " owners.");
+        }
+    }
+
+    /**
+     * Brings tickets and billing in line with the claims after they were reloaded from disk.
+     * Claims that are gone (or changed owner) are deactivated; new claims of online owners (and of offline owners
+     * with loaders.keep_offline_active) are activated and billed like on placement.
+     */
+    public void reconcileClaims(Map<ChunkKey, String> previousClaims) {
+        Map<ChunkKey, String> currentClaims = claimRegistry.getAllClaims();
+        Set<String> changedOwners = new HashSet<>();
+        int removed = 0;
+        for (Map.Entry<ChunkKey, String> claim : previousClaims.entrySet()) {
+            if (claim.getValue().equals(currentClaims.get(claim.getKey()))) continue;
+            unloadChunkAndSurrounding(claim.getKey());
+            changedOwners.add(claim.getValue());
+            removed++;
+        }
+        int added = 0;
+        for (Map.Entry<ChunkKey, String> claim : currentClaims.entrySet()) {
+            if (claim.getValue().equals(previousClaims.get(claim.getKey()))) continue;
+            changedOwners.add(claim.getValue());
+            added++;
+        }
+
+        for (String ownerKey : changedOwners) {
+            UUID playerUUID;
+            try {
+                playerUUID = UUID.fromString(ownerKey);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (!claimRegistry.hasClaims(ownerKey)) {
+                cancelPaymentTask(playerUUID);
+                loadedPlayers.remove(playerUUID);
+                continue;
+            }
+            if (!keepOfflineActive && Bukkit.getPlayer(playerUUID) == null) continue;
+            loadedPlayers.add(playerUUID);
+            for (ChunkKey chunkKey : claimRegistry.getClaims(ownerKey)) {
+                loadChunkAndSurrounding(chunkKey);
+            }
+            ensurePaymentProcess(playerUUID);
+        }
+        if (removed > 0 || added > 0) {
+            plugin.getLogger().info("Reloaded claims: " + added + " added, " + removed + " removed.");
+        }
+    }
+
     @EventHandler
     public void onPlayerLeave(PlayerQuitEvent event) {
+        // Loaders of offline owners stay active and keep being billed
+        if (keepOfflineActive) return;
         UUID playerUUID = event.getPlayer().getUniqueId();
         loadedPlayers.remove(playerUUID);
-        List<String> playerChunks = chunkConfig.getStringList(playerUUID.toString());
-        if (playerChunks != null) {
-            for (String chunkKey : playerChunks) {
-                unloadChunkAndSurrounding(chunkKey);
-            }
+        for (ChunkKey chunkKey : claimRegistry.getClaims(playerUUID.toString())) {
+            unloadChunkAndSurrounding(chunkKey);
         }
         cancelPaymentTask(playerUUID);
     }
 
+    /**
+     * Reactivates, in bulk, the loaders of loaded owners in a world that was (re)loaded.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        World world = event.getWorld();
+        int worldIndex = ChunkKey.bindWorld(world);
+        Map<String, Boolean> ownerLoaded = new HashMap<>();
+        LongList centers = new LongArrayList();
+        for (Long2ObjectMap.Entry<String> claim : claimRegistry.getSpatialIndex().getCenters(worldIndex).long2ObjectEntrySet()) {
+            if (ownerLoaded.computeIfAbsent(claim.getValue(), this::isLoadedOwner)) centers.add(claim.getLongKey());
+        }
+        int activated = ticketManager.activateAll(worldIndex, centers);
+        if (activated > 0) {
+            plugin.getLogger().info("Reactivated " + activated + " chunk loaders in world " + world.getName() + ".");
+        }
+    }
+
+    /**
+     * Drops all loaders and tickets of a world that unloads, in one go. Claims are kept, the loaders come back
+     * through onWorldLoad when the world loads again.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        World world = event.getWorld();
+        int deactivated = ticketManager.unloadWorld(world).size();
+        ChunkKey.unbindWorld(world);
+        if (deactivated > 0) {
+            plugin.getLogger().info("Suspended " + deactivated + " chunk loaders in unloaded world " + world.getName() + ".");
+        }
+    }
+
+    private boolean isLoadedOwner(String ownerKey) {
+        try {
+            return loadedPlayers.contains(UUID.fromString(ownerKey));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * Called by ManagementHandler on creation.
      *
      * If `isFirstLoader` is true, charges only for 1 chunk, not for the whole (prevents double charge).
-     * Returns true if payment succeeded, false otherwise.
+     * The charge runs through the EconomyGateway; onResult receives true if payment succeeded, false otherwise,
+     * always on the main thread.
      */
-    public boolean chargeAndStartProcessOnCreate(Player player, String chunkKey, boolean isFirstLoader) {
+    public void chargeAndStartProcessOnCreate(Player player, ChunkKey chunkKey, boolean isFirstLoader, Consumer<Boolean> onResult) {
         UUID playerUUID = player.getUniqueId();
-        List<String> playerChunks = chunkConfig.getStringList(playerUUID.toString());
-        if (playerChunks == null) playerChunks = new ArrayList<>();
-        int chunkCount = playerChunks.size();
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerUUID);
+        int chunkCount = claimRegistry.getClaimCount(playerUUID.toString());
 
         // Only charge for the newly claimed chunk (not all) on create, only if this is the first loader (chunkCount==1)
         double chargeAmount = isFirstLoader && chunkCount == 1 ? DUTY_PER_CHUNK : 0.0;
-        if (chargeAmount > 0.0 && !economy.has(offlinePlayer, chargeAmount)) {
-            return false;
-        }
-        if (chargeAmount > 0.0) {
-            if (!economy.withdrawPlayer(offlinePlayer, chargeAmount).transactionSuccess()) {
-                return false;
+        economyGateway.withdraw(playerUUID, chargeAmount, result -> {
+            if (result != EconomyGateway.Result.PAID) {
+                onResult.accept(false);
+                return;
             }
-            Player online = offlinePlayer.getPlayer();
-            if (online != null && online.isOnline()) {
-                online.sendMessage("§aChunk loader fee of §e" + chargeAmount + "§a has been paid for 1 chunk.");
+            if (chargeAmount > 0.0) {
+                Player online = Bukkit.getPlayer(playerUUID);
+                if (online != null && online.isOnline()) {
+                    online.sendMessage("§aChunk loader fee of §e" + chargeAmount + "§a has been paid for 1 chunk.");
+                }
             }
-        }
-
-        loadedPlayers.add(playerUUID);
-        loadChunkAndSurrounding(chunkKey);
-        ensurePaymentProcess(player);
 
-        return true;
+            // The loader may have been removed while the payment was in flight
+            if (claimRegistry.isClaimed(chunkKey)) {
+                loadedPlayers.add(playerUUID);
+                loadChunkAndSurrounding(chunkKey);
+            }
+            Player online = Bukkit.getPlayer(playerUUID);
+            if (online != null) ensurePaymentProcess(online);
+            onResult.accept(true);
+        });
     }
 
     /**
@@ -115,112 +267,280 @@ public class PaymentHandler implements Listener {
      *
      * Unloads the chunk and, if last claim, cancels payment process.
      */
-    public void onChunkLoaderRemoved(Player player, String chunkKey) {
-        UUID playerUUID = player.getUniqueId();
+    public void onChunkLoaderRemoved(Player player, ChunkKey chunkKey) {
+        onChunkLoaderRemoved(player.getUniqueId(), chunkKey);
+    }
+
+    public void onChunkLoaderRemoved(UUID playerUUID, ChunkKey chunkKey) {
         unloadChunkAndSurrounding(chunkKey);
 
-        List<String> playerChunks = chunkConfig.getStringList(playerUUID.toString());
-        if (playerChunks == null || playerChunks.isEmpty()) {
+        if (!claimRegistry.hasClaims(playerUUID.toString())) {
             cancelPaymentTask(playerUUID);
             loadedPlayers.remove(playerUUID);
         }
     }
 
-    public void unloadChunkAndSurrounding(String chunkKey) {
-        String[] parts = chunkKey.split(":");
-        if (parts.length < 3) return;
-        String worldName = parts[0];
-        int cx = Integer.parseInt(parts[1]);
-        int cz = Integer.parseInt(parts[2]);
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) return;
-
-        Set<String> areaKeys = chunkRangeUtil.getAreaChunkKeys(world, cx, cz);
-        for (String areaKey : areaKeys) {
-            String[] aParts = areaKey.split(":");
-            if (aParts.length < 3) continue;
-            int ax = Integer.parseInt(aParts[1]);
-            int az = Integer.parseInt(aParts[2]);
-            if (loadedChunkKeys.remove(areaKey)) {
-                world.removePluginChunkTicket(ax, az, plugin);
-            }
-        }
+    public void unloadChunkAndSurrounding(ChunkKey chunkKey) {
+        ticketManager.deactivate(chunkKey);
     }
 
     public void ensurePaymentProcess(Player player) {
-        UUID playerUUID = player.getUniqueId();
-        List<String> playerChunks = chunkConfig.getStringList(playerUUID.toString());
-        if (playerChunks == null || playerChunks.isEmpty()) {
+        ensurePaymentProcess(player.getUniqueId());
+    }
+
+    public void ensurePaymentProcess(UUID playerUUID) {
+        if (!claimRegistry.hasClaims(playerUUID.toString())) {
             cancelPaymentTask(playerUUID);
             return;
         }
-        if (playerPaymentTasks.containsKey(playerUUID)) return;
-        BukkitTask task = Bukkit.getScheduler().runTaskTimer(plugin, () -> checkPaymentsForPlayer(playerUUID), PAYMENT_CHECK_INTERVAL * 20L, PAYMENT_CHECK_INTERVAL * 20L);
-        playerPaymentTasks.put(playerUUID, task);
-        checkPaymentsForPlayer(playerUUID);
+        // Billed right away (within the per-tick budget), then every PAYMENT_CHECK_INTERVAL seconds
+        billingScheduler.schedule(playerUUID);
+    }
+
+    public BillingScheduler getBillingScheduler() {
+        return billingScheduler;
+    }
+
+    /**
+     * Returns the duty ledger, or null in direct billing mode.
+     */
+    public BillingLedger getLedger() {
+        return ledger;
     }
 
     private void checkPaymentsForPlayer(UUID playerUUID) {
-        List<String> chunks = chunkConfig.getStringList(playerUUID.toString());
-        if (chunks == null || chunks.isEmpty()) {
+        int chunkCount = claimRegistry.getClaimCount(playerUUID.toString());
+        if (chunkCount == 0) {
             cancelPaymentTask(playerUUID);
             return;
         }
-        int chunkCount = chunks.size();
-        double totalDuty = DUTY_PER_CHUNK * chunkCount;
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerUUID);
+        double totalDuty = getDuty(playerUUID, chunkCount);
+
+        // Only loaded players pay, but everyone must be able to cover their loaders
+        if (loadedPlayers.contains(playerUUID)) {
+            double duty = creditGovernorTime(playerUUID, totalDuty);
+            if (ledger != null) {
+                accrueForPlayer(playerUUID, duty);
+                return;
+            }
+            economyGateway.withdraw(playerUUID, duty, result -> onPaymentChecked(playerUUID, result, true, duty, chunkCount));
+        } else {
+            economyGateway.has(playerUUID, totalDuty, result -> onPaymentChecked(playerUUID, result, false, totalDuty, chunkCount));
+        }
+    }
+
+    /**
+     * Duty for one billing run: the flat rate per chunk, or with cost.scale_billing, the rate scaled by the
+     * measured cost of each loader.
+     */
+    private double getDuty(UUID playerUUID, int chunkCount) {
+        if (!scaleBilling) return DUTY_PER_CHUNK * chunkCount;
+        double duty = 0.0;
+        for (ChunkKey chunkKey : claimRegistry.getClaims(playerUUID.toString())) {
+            duty += getLoaderDuty(chunkKey);
+        }
+        return Math.round(duty * 100.0) / 100.0;
+    }
+
+    private double getLoaderDuty(ChunkKey centerKey) {
+        return scaleBilling ? DUTY_PER_CHUNK * plugin.costSampler.getBillingFactor(centerKey) : DUTY_PER_CHUNK;
+    }
+
+    /**
+     * Takes the time the LoadGovernor shrunk or suspended the owner's loaders off one run of duty:
+     * - Shrunk time is credited for the share of the area that was released, on the whole duty.
+     * - Suspended time is credited on the duty of each suspended loader.
+     * Time beyond one billing run (e.g. while the owner wasn't billed) is not credited.
+     */
+    private double creditGovernorTime(UUID playerUUID, double totalDuty) {
+        if (plugin.loadGovernor == null) return totalDuty;
+        String ownerKey = playerUUID.toString();
+        double runMillis = PAYMENT_CHECK_INTERVAL * 1000.0;
+        long shrunkMillis = plugin.loadGovernor.drainShrunkMillis(ownerKey);
+        double credit = totalDuty * plugin.loadGovernor.getShrinkLoss() * Math.min(runMillis, shrunkMillis) / runMillis;
+        for (Map.Entry<ChunkKey, Double> suspended : plugin.loadGovernor.drainSuspendedMillis(ownerKey).entrySet()) {
+            credit += getLoaderDuty(suspended.getKey()) * Math.min(runMillis, suspended.getValue()) / runMillis;
+        }
+        return Math.max(0.0, Math.round((totalDuty - credit) * 100.0) / 100.0);
+    }
 
-        if (economy.has(offlinePlayer, totalDuty)) {
-            if (loadedPlayers.contains(playerUUID)) {
-                economy.withdrawPlayer(offlinePlayer, totalDuty);
-                Player player = offlinePlayer.getPlayer();
+    /**
+     * Applies the outcome of a billing run, on the main thread.
+     */
+    private void onPaymentChecked(UUID playerUUID, EconomyGateway.Result result, boolean withdrawn, double totalDuty, int chunkCount) {
+        if (result == EconomyGateway.Result.FAILED) {
+            // The economy refused or errored, try again next run
+            return;
+        }
+        Player player = Bukkit.getPlayer(playerUUID);
+        if (result == EconomyGateway.Result.PAID) {
+            if (withdrawn && loadedPlayers.contains(playerUUID)) {
                 if (player != null && player.isOnline()) {
                     player.sendMessage("§aChunk loader fee of §e" + totalDuty + "§a has been paid for " + chunkCount + " chunks.");
                 }
-                for (String chunkKey : chunks) {
+                for (ChunkKey chunkKey : claimRegistry.getClaims(playerUUID.toString())) {
                     loadChunkAndSurrounding(chunkKey);
                 }
             }
-        } else {
-            for (String chunkKey : chunks) {
-                unloadChunkAndSurrounding(chunkKey);
-                dropDoubleChunkLoaderAt(chunkKey);
+            return;
+        }
+
+        removeUnpaidClaims(playerUUID);
+    }
+
+    /**
+     * Ledger mode: accrues one run of duty and keeps the loaders loaded. Settles with the economy only when due.
+     */
+    private void accrueForPlayer(UUID playerUUID, double totalDuty) {
+        ledger.accrue(playerUUID, totalDuty);
+        for (ChunkKey chunkKey : claimRegistry.getClaims(playerUUID.toString())) {
+            loadChunkAndSurrounding(chunkKey);
+        }
+        if (!ledger.isSettlementDue(playerUUID)) return;
+
+        double amount = ledger.beginSettlement(playerUUID);
+        economyGateway.settle(playerUUID, amount, settlement -> {
+            if (settlement.result == EconomyGateway.Result.FAILED) {
+                // The economy refused or errored, try again next run
+                ledger.settlementFailed(playerUUID);
+                return;
+            }
+            if (settlement.result == EconomyGateway.Result.INSUFFICIENT_FUNDS) {
+                settleShort(playerUUID, amount, settlement.balance);
+                return;
             }
-            chunkConfig.set(playerUUID.toString(), new ArrayList<>());
-            Player player = offlinePlayer.getPlayer();
+            ledger.settled(playerUUID, amount, settlement.balance);
+            Player player = Bukkit.getPlayer(playerUUID);
             if (player != null && player.isOnline()) {
-                player.sendMessage("§cYour chunk loader claims have been removed due to insufficient funds. The chunk loaders were dropped at their locations.");
-                player.playSound(player.getLocation(), org.bukkit.Sound.ENTITY_ENDER_DRAGON_GROWL, org.bukkit.SoundCategory.MASTER, 1.0f, 1.0f);
+                player.sendMessage("§aChunk loader fees of §e" + amount + "§a have been paid for your " + claimRegistry.getClaimCount(playerUUID.toString()) + " chunks.");
+            }
+        });
+    }
+
+    /**
+     * Ledger mode: the owner's live balance can't cover amount. Every loader owes an equal share of it; the owner
+     * pays for as many whole loaders as their balance covers and keeps those, the others are removed and their
+     * share is written off. Nothing is withdrawn if not even one loader is covered.
+     */
+    private void settleShort(UUID playerUUID, double amount, double balance) {
+        List<ChunkKey> claims = new ArrayList<>(claimRegistry.getClaims(playerUUID.toString()));
+        double share = claims.isEmpty() ? amount : amount / claims.size();
+        int covered = Double.isNaN(balance) || share <= 0.0 ? 0 : Math.min(claims.size() - 1, (int) Math.floor(balance / share));
+        if (covered <= 0) {
+            ledger.forget(playerUUID);
+            removeUnpaidClaims(playerUUID);
+            return;
+        }
+
+        double partial = Math.floor(covered * share * 100.0) / 100.0;
+        economyGateway.settle(playerUUID, partial, settlement -> {
+            if (settlement.result != EconomyGateway.Result.PAID) {
+                // The balance changed in the meantime; short owners are settled again on the next run
+                ledger.settlementFailed(playerUUID);
+                return;
             }
+            ledger.settled(playerUUID, partial, settlement.balance);
+            // Keep the oldest loaders, drop the newest ones
+            List<ChunkKey> unpaid = claims.subList(covered, claims.size());
+            ledger.writeOff(playerUUID, amount - partial);
+            removeUnpaidClaims(playerUUID, unpaid);
+        });
+    }
+
+    /**
+     * Ledger mode: restores the fees accrued before the last shutdown or crash from ledger.yml.
+     */
+    private void restoreLedger() {
+        String[] ownerKeys = plugin.config.ledger.getKeys("");
+        if (ownerKeys == null) return;
+        for (String ownerKey : ownerKeys) {
+            Object raw = plugin.config.ledger.get(ownerKey);
+            if (raw == null) continue;
+            try {
+                ledger.restore(UUID.fromString(ownerKey), Double.parseDouble(raw.toString()));
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Skipping invalid ledger.yml entry " + ownerKey + ": " + raw);
+            }
+        }
+    }
+
+    private Map<String, Object> snapshotLedger() {
+        return ledger.snapshot();
+    }
+
+    /**
+     * Ledger mode: settles whatever the owner still owes and removes them from the ledger.
+     */
+    private void closeLedgerAccount(UUID playerUUID) {
+        double outstanding = ledger.forget(playerUUID);
+        if (outstanding <= 0.0) return;
+        economyGateway.withdraw(playerUUID, outstanding, result -> {
+            if (result != EconomyGateway.Result.PAID) {
+                plugin.getLogger().warning("Could not settle " + outstanding + " of chunk loader fees for " + playerUUID + ": " + result);
+            }
+        });
+    }
+
+    /**
+     * Removes all claims of an owner that can't pay, dropping their chunk loaders.
+     */
+    private void removeUnpaidClaims(UUID playerUUID) {
+        for (ChunkKey chunkKey : claimRegistry.clearClaims(playerUUID.toString())) {
+            unloadChunkAndSurrounding(chunkKey);
+            dropDoubleChunkLoaderAt(chunkKey);
+        }
+        notifyUnpaidClaimsRemoved(playerUUID);
+        cancelPaymentTask(playerUUID);
+        loadedPlayers.remove(playerUUID);
+    }
+
+    /**
+     * Removes some of the claims of an owner that can't pay for all of them, dropping those chunk loaders.
+     */
+    private void removeUnpaidClaims(UUID playerUUID, List<ChunkKey> unpaid) {
+        String ownerKey = playerUUID.toString();
+        for (ChunkKey chunkKey : unpaid) {
+            if (!ownerKey.equals(claimRegistry.getOwner(chunkKey))) continue;
+            claimRegistry.removeClaim(chunkKey);
+            unloadChunkAndSurrounding(chunkKey);
+            dropDoubleChunkLoaderAt(chunkKey);
+        }
+        if (!claimRegistry.hasClaims(ownerKey)) {
+            notifyUnpaidClaimsRemoved(playerUUID);
             cancelPaymentTask(playerUUID);
             loadedPlayers.remove(playerUUID);
+            return;
+        }
+        Player player = Bukkit.getPlayer(playerUUID);
+        if (player != null && player.isOnline()) {
+            player.sendMessage("§cYou could only pay for " + claimRegistry.getClaimCount(ownerKey) + " of your chunk loaders. The others were removed and dropped at their locations.");
+            player.playSound(player.getLocation(), org.bukkit.Sound.ENTITY_ENDER_DRAGON_GROWL, org.bukkit.SoundCategory.MASTER, 1.0f, 1.0f);
         }
     }
 
-    private void dropDoubleChunkLoaderAt(String chunkKey) {
-        String[] parts = chunkKey.split(":");
-        if (parts.length < 3) return;
-        String worldName = parts[0];
-        int cx = Integer.parseInt(parts[1]);
-        int cz = Integer.parseInt(parts[2]);
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) return;
-
-        for (int y = world.getMinHeight(); y < world.getMaxHeight() - 1; y++) {
-            for (int lx = 0; lx < 16; lx++) {
-                for (int lz = 0; lz < 16; lz++) {
-                    int bx = (cx << 4) + lx;
-                    int bz = (cz << 4) + lz;
-                    org.bukkit.Location base = new org.bukkit.Location(world, bx, y, bz);
-                    if (isPhysicalDoubleLoader(base)) {
-                        breakDoubleChunkLoader(base, true);
-                        return;
-                    }
-                }
-            }
+    private void notifyUnpaidClaimsRemoved(UUID playerUUID) {
+        Player player = Bukkit.getPlayer(playerUUID);
+        if (player != null && player.isOnline()) {
+            player.sendMessage("§cYour chunk loader claims have been removed due to insufficient funds. The chunk loaders were dropped at their locations.");
+            player.playSound(player.getLocation(), org.bukkit.Sound.ENTITY_ENDER_DRAGON_GROWL, org.bukkit.SoundCategory.MASTER, 1.0f, 1.0f);
         }
     }
 
+    private void dropDoubleChunkLoaderAt(ChunkKey chunkKey) {
+        org.bukkit.Location base = loaderPositions.get(chunkKey);
+        loaderPositions.remove(chunkKey);
+        org.bukkit.World world = chunkKey.getWorld();
+        if (base == null || world == null) return;
+        // The loader's chunk is usually no longer loaded, load it off the main thread before breaking the loader
+        world.getChunkAtAsync(chunkKey.getX(), chunkKey.getZ(), false).thenAccept(chunk -> {
+            if (chunk == null) return;
+            plugin.chunkMarkers.unmark(chunk);
+            if (isPhysicalDoubleLoader(base)) {
+                breakDoubleChunkLoader(base, true);
+            }
+        });
+    }
+
     private boolean isPhysicalDoubleLoader(org.bukkit.Location lodestoneLoc) {
         org.bukkit.block.Block base = lodestoneLoc.getBlock();
         org.bukkit.block.Block above = lodestoneLoc.clone().add(0, 1, 0).getBlock();
@@ -242,52 +562,23 @@ public class PaymentHandler implements Listener {
     }
 
     public void unloadAllClaimedChunks() {
-        synchronized (loadedChunkKeys) {
-            for (String chunkKey : loadedChunkKeys) {
-                String[] parts = chunkKey.split(":");
-                if (parts.length < 3) continue;
-                String worldName = parts[0];
-                int cx = Integer.parseInt(parts[1]);
-                int cz = Integer.parseInt(parts[2]);
-                World world = Bukkit.getWorld(worldName);
-                if (world == null) continue;
-                world.removePluginChunkTicket(cx, cz, plugin);
-            }
-            loadedChunkKeys.clear();
-        }
+        ticketManager.releaseAll();
     }
 
-    public void loadChunkAndSurrounding(String chunkKey) {
-        String[] parts = chunkKey.split(":");
-        if (parts.length < 3) return;
-        String worldName = parts[0];
-        int cx = Integer.parseInt(parts[1]);
-        int cz = Integer.parseInt(parts[2]);
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) return;
-
-        Set<String> areaKeys = chunkRangeUtil.getAreaChunkKeys(world, cx, cz);
-        for (String areaKey : areaKeys) {
-            String[] aParts = areaKey.split(":");
-            if (aParts.length < 3) continue;
-            int ax = Integer.parseInt(aParts[1]);
-            int az = Integer.parseInt(aParts[2]);
-            world.addPluginChunkTicket(ax, az, plugin);
-            loadedChunkKeys.add(areaKey);
-        }
+    public void loadChunkAndSurrounding(ChunkKey chunkKey) {
+        if (chunkKey.getWorld() == null) return;
+        ticketManager.activate(chunkKey);
     }
 
     private void cancelPaymentTask(UUID playerUUID) {
-        BukkitTask task = playerPaymentTasks.remove(playerUUID);
-        if (task != null) {
-            task.cancel();
-        }
+        billingScheduler.cancel(playerUUID);
+        if (ledger != null) closeLedgerAccount(playerUUID);
+        if (plugin.loadGovernor != null) plugin.loadGovernor.forgetBilling(playerUUID.toString());
     }
 
     private void cancelAllPaymentTasks() {
-        for (BukkitTask task : playerPaymentTasks.values()) {
-            task.cancel();
-        }
-        playerPaymentTasks.clear();
+        billingScheduler.cancelAll();
+        // The economy is already shut down here; outstanding fees stay in ledger.yml and are settled after the restart
+        if (ledgerFile != null) ledgerFile.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package com.lyttledev.lyttlechunkloader.types;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Internal chunk identifier: a world index plus the chunk (x,z) packed into one long.
+ * - Avoids building and re-parsing "world:x:z" strings on hot paths.
+ * - Strings are only used at the YAML boundary, through fromString and toString.
+ * - The packed layout matches Bukkit's Chunk#getChunkKey (x in the low, z in the high 32 bits).
+ * - World indexes are registered by name (the name is what's stored) and bound to the loaded World by UUID,
+ *   so resolving a key's world doesn't go through Bukkit's by-name lookup.
+ */
+public final class ChunkKey {
+    private static final Map<String, Integer> worldIndexes = new ConcurrentHashMap<>();
+    private static final List<String> worldNames = new ArrayList<>();
+    // World index -> loaded World, null while the world isn't loaded (guarded by worldNames)
+    private static final List<World> loadedWorlds = new ArrayList<>();
+    private static final Map<UUID, Integer> worldIndexesByUid = new ConcurrentHashMap<>();
+
+    private final int worldIndex;
+    private final long packed;
+
+    private ChunkKey(int worldIndex, long packed) {
+        this.worldIndex = worldIndex;
+        this.packed = packed;
+    }
+
+    public static ChunkKey of(int worldIndex, long packed) {
+        return new ChunkKey(worldIndex, packed);
+    }
+
+    public static ChunkKey of(World world, int cx, int cz) {
+        return new ChunkKey(indexOf(world), pack(cx, cz));
+    }
+
+    public static ChunkKey of(Location location) {
+        return of(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    public static ChunkKey of(Chunk chunk) {
+        return of(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Parses a "world:x:z" key as stored in YAML. Returns null if malformed.
+     */
+    public static ChunkKey fromString(String chunkKey) {
+        if (chunkKey == null) return null;
+        int second = chunkKey.lastIndexOf(':');
+        int first = second > 0 ? chunkKey.lastIndexOf(':', second - 1) : -1;
+        if (first <= 0) return null;
+        try {
+            int cx = Integer.parseInt(chunkKey.substring(first + 1, second));
+            int cz = Integer.parseInt(chunkKey.substring(second + 1));
+            return new ChunkKey(worldIndex(chunkKey.substring(0, first)), pack(cx, cz));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Packs chunk coordinates into a single long.
+     */
+    public static long pack(int cx, int cz) {
+        return ((long) cx & 0xFFFFFFFFL) | (((long) cz & 0xFFFFFFFFL) << 32);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) packed;
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * Returns the stable (per server run) index for a world name, registering it if needed.
+     */
+    public static int worldIndex(String worldName) {
+        Integer index = worldIndexes.get(worldName);
+        if (index != null) return index;
+        synchronized (worldNames) {
+            return worldIndexes.computeIfAbsent(worldName, name -> {
+                worldNames.add(name);
+                loadedWorlds.add(null);
+                return worldNames.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Returns the index of a loaded world, binding the World to it if needed.
+     */
+    public static int indexOf(World world) {
+        Integer index = worldIndexesByUid.get(world.getUID());
+        if (index != null) return index;
+        return bindWorld(world);
+    }
+
+    /**
+     * Returns the index of the loaded world with this UUID, or -1 if it was never seen.
+     */
+    public static int indexOf(UUID worldUid) {
+        Integer index = worldIndexesByUid.get(worldUid);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Binds a (newly) loaded World to the index of its name. Returns the index.
+     */
+    public static int bindWorld(World world) {
+        int index = worldIndex(world.getName());
+        synchronized (worldNames) {
+            loadedWorlds.set(index, world);
+        }
+        worldIndexesByUid.put(world.getUID(), index);
+        return index;
+    }
+
+    /**
+     * Forgets the World bound to this world's index, e.g. when it is unloaded. Returns the index.
+     */
+    public static int unbindWorld(World world) {
+        int index = worldIndex(world.getName());
+        synchronized (worldNames) {
+            if (loadedWorlds.get(index) == world) loadedWorlds.set(index, null);
+        }
+        worldIndexesByUid.remove(world.getUID());
+        return index;
+    }
+
+    public static String worldName(int worldIndex) {
+        synchronized (worldNames) {
+            return worldIndex >= 0 && worldIndex < worldNames.size() ? worldNames.get(worldIndex) : null;
+        }
+    }
+
+    /**
+     * Returns the loaded World for a world index, or null if it isn't loaded.
+     */
+    public static World world(int worldIndex) {
+        String name;
+        synchronized (worldNames) {
+            if (worldIndex < 0 || worldIndex >= worldNames.size()) return null;
+            World bound = loadedWorlds.get(worldIndex);
+            if (bound != null) return bound;
+            name = worldNames.get(worldIndex);
+        }
+        World world = Bukkit.getWorld(name);
+        if (world != null) bindWorld(world);
+        return world;
+    }
+
+    public int getWorldIndex() {
+        return worldIndex;
+    }
+
+    public long getPacked() {
+        return packed;
+    }
+
+    public int getX() {
+        return unpackX(packed);
+    }
+
+    public int getZ() {
+        return unpackZ(packed);
+    }
+
+    public String getWorldName() {
+        return worldName(worldIndex);
+    }
+
+    public World getWorld() {
+        return world(worldIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChunkKey)) return false;
+        ChunkKey other = (ChunkKey) o;
+        return worldIndex == other.worldIndex && packed == other.packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * worldIndex + Long.hashCode(packed);
+    }
+
+    /**
+     * Returns the "world:x:z" form, as stored in YAML.
+     */
+    @Override
+    public String toString() {
+        return getWorldName() + ":" + getX() + ":" + getZ();
+    }
+}
@@ -10,11 +10,15 @@ public class Configs {
     public YamlConfig general;
     public YamlConfig chunks;
     public YamlConfig messages;
+    public YamlConfig positions;
+    public YamlConfig ledger;
 
     // Default configs
     public YamlConfig defaultGeneral;
     public YamlConfig defaultChunks;
     public YamlConfig defaultMessages;
+    public YamlConfig defaultPositions;
+    public YamlConfig defaultLedger;
 
 
     public Configs(LyttleChunkLoader plugin) {
@@ -24,21 +28,65 @@ public class Configs {
         general = new YamlConfig(plugin, "config.yml");
         chunks = new YamlConfig(plugin, "chunks.yml");
         messages = new YamlConfig(plugin, "messages.yml");
+        positions = new YamlConfig(plugin, "positions.yml");
+        ledger = new YamlConfig(plugin, "ledger.yml");
 
         // Default configs
         defaultGeneral = new YamlConfig(plugin, "#defaults/config.yml");
         defaultChunks = new YamlConfig(plugin, "#defaults/chunks.yml");
         defaultMessages = new YamlConfig(plugin, "#defaults/messages.yml");
+        defaultPositions = new YamlConfig(plugin, "#defaults/positions.yml");
+        defaultLedger = new YamlConfig(plugin, "#defaults/ledger.yml");
     }
 
     public void reload() {
         general.reload();
         chunks.reload();
         messages.reload();
+        positions.reload();
+        ledger.reload();
 
         plugin.reloadConfig();
     }
 
+    /**
+     * Returns a value from config.yml, falling back to the default config when it is missing.
+     */
+    public Object getGeneral(String path) {
+        Object value = general.get(path);
+        return value != null ? value : defaultGeneral.get(path);
+    }
+
+    public boolean getBoolean(String path) {
+        Object value = getGeneral(path);
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    public int getInt(String path) {
+        Object value = getGeneral(path);
+        if (value instanceof Number) return ((Number) value).intValue();
+        try {
+            return value != null ? Integer.parseInt(value.toString().trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public double getDouble(String path) {
+        Object value = getGeneral(path);
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        try {
+            return value != null ? Double.parseDouble(value.toString().trim()) : 0.0;
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    public String getString(String path) {
+        Object value = getGeneral(path);
+        return value != null ? value.toString() : "";
+    }
+
     private String getConfigPath(String path) {
         return plugin.getConfig().getString("configs." + path);
     }
@@ -0,0 +1,156 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * In-memory duty ledger for billing.mode: ledger.
+ * - Every billing run only adds the owner's duty to their accrued balance, without touching the economy.
+ * - The accrued balance is settled in one withdrawal every settleIntervalMillis, or as soon as it exceeds
+ *   the balance the owner had left after their last settlement, so unpaid loaders still unload promptly.
+ * - Accrued amounts are persisted through onChanged (ledger.yml) and restored on startup, so duty accrued between
+ *   settlements survives a restart or crash.
+ * - Once the balance left after a settlement wouldn't cover another settlement of the same size, the owner is
+ *   short and is settled on every billing run, so the decision to unload rests on a fresh balance.
+ *
+ * All methods must be called on the main thread.
+ */
+public class BillingLedger {
+    private static final class Account {
+        private double accrued = 0.0;
+        private double coverable = Double.NaN; // Balance left after the last settlement, NaN if unknown
+        private long lastSettled;
+        private double settling = 0.0; // Amount of the settlement in flight, 0 if none
+        private boolean shortOfFunds = false; // The last settlement left less than it took
+
+        private Account(long now) {
+            this.lastSettled = now;
+        }
+    }
+
+    private final long settleIntervalMillis;
+    private final Runnable onChanged;
+    private final Map<UUID, Account> accounts = new HashMap<>();
+
+    /**
+     * @param onChanged Called after every change of an accrued amount, to persist the ledger
+     */
+    public BillingLedger(long settleIntervalMillis, Runnable onChanged) {
+        this.settleIntervalMillis = Math.max(0L, settleIntervalMillis);
+        this.onChanged = onChanged;
+    }
+
+    /**
+     * Adds amount to the owner's accrued duty. Returns the new accrued total.
+     */
+    public double accrue(UUID ownerUUID, double amount) {
+        Account account = accounts.computeIfAbsent(ownerUUID, uuid -> new Account(System.currentTimeMillis()));
+        account.accrued += amount;
+        onChanged.run();
+        return account.accrued;
+    }
+
+    /**
+     * Restores duty accrued before a restart. Its owner is settled on their first billing run.
+     */
+    public void restore(UUID ownerUUID, double accrued) {
+        if (accrued <= 0.0) return;
+        accounts.computeIfAbsent(ownerUUID, uuid -> new Account(System.currentTimeMillis())).accrued += accrued;
+    }
+
+    /**
+     * Returns a detached copy of all accrued amounts (owner UUID string -> amount), for persisting.
+     * A settlement in flight still counts as accrued until it is confirmed.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        for (Map.Entry<UUID, Account> entry : accounts.entrySet()) {
+            if (entry.getValue().accrued > 0.0) snapshot.put(entry.getKey().toString(), entry.getValue().accrued);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns true if the owner's accrued duty must be settled now: the settle interval passed,
+     * or the owner may no longer be able to cover it. Never true while a settlement is in flight.
+     */
+    public boolean isSettlementDue(UUID ownerUUID) {
+        Account account = accounts.get(ownerUUID);
+        if (account == null || account.settling > 0.0 || account.accrued <= 0.0) return false;
+        if (account.shortOfFunds || Double.isNaN(account.coverable) || account.accrued > account.coverable) return true;
+        return System.currentTimeMillis() - account.lastSettled >= settleIntervalMillis;
+    }
+
+    /**
+     * Marks a settlement of the current accrued amount as started. Returns that amount.
+     */
+    public double beginSettlement(UUID ownerUUID) {
+        Account account = accounts.get(ownerUUID);
+        if (account == null) return 0.0;
+        account.settling = account.accrued;
+        return account.accrued;
+    }
+
+    /**
+     * Records a (possibly partial) settlement of amount, with the balance the owner had left afterwards.
+     * Duty that wasn't paid, or accrued while the settlement was in flight, stays on the ledger.
+     */
+    public void settled(UUID ownerUUID, double amount, double balanceAfter) {
+        Account account = accounts.get(ownerUUID);
+        if (account == null) return;
+        account.accrued = Math.max(0.0, account.accrued - amount);
+        account.coverable = balanceAfter;
+        account.shortOfFunds = Double.isNaN(balanceAfter) || balanceAfter < amount;
+        account.lastSettled = System.currentTimeMillis();
+        account.settling = 0.0;
+        onChanged.run();
+    }
+
+    /**
+     * Records a settlement that did not go through; it is retried on the next billing run.
+     */
+    public void settlementFailed(UUID ownerUUID) {
+        Account account = accounts.get(ownerUUID);
+        if (account != null) account.settling = 0.0;
+    }
+
+    /**
+     * Drops amount of the owner's accrued duty without settling it, e.g. for loaders removed for not being paid.
+     */
+    public void writeOff(UUID ownerUUID, double amount) {
+        Account account = accounts.get(ownerUUID);
+        if (account == null) return;
+        account.accrued = Math.max(0.0, account.accrued - amount);
+        onChanged.run();
+    }
+
+    public double getAccrued(UUID ownerUUID) {
+        Account account = accounts.get(ownerUUID);
+        return account != null ? account.accrued : 0.0;
+    }
+
+    /**
+     * Returns the total accrued, unsettled duty of all owners.
+     */
+    public double getTotalAccrued() {
+        double total = 0.0;
+        for (Account account : accounts.values()) total += account.accrued;
+        return total;
+    }
+
+    public Set<UUID> getOwners() {
+        return accounts.keySet();
+    }
+
+    /**
+     * Removes the owner from the ledger. Returns the accrued duty that is not covered by a settlement in flight.
+     */
+    public double forget(UUID ownerUUID) {
+        Account account = accounts.remove(ownerUUID);
+        if (account == null) return 0.0;
+        onChanged.run();
+        return Math.max(0.0, account.accrued - account.settling);
+    }
+}
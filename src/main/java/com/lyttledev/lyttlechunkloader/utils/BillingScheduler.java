@@ -0,0 +1,152 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Single driver for all recurring billing, replacing one BukkitTask per player.
+ * - Players sit in a timing wheel with one slot per tick of the billing interval.
+ * - Every tick, the players of the current slot become due and are billed, at most maxPerTick per tick.
+ * - Players over budget carry over to the next tick and are re-slotted at the tick they were actually billed,
+ *   so a burst of players (e.g. everyone joining after a restart) spreads out evenly after one cycle.
+ *
+ * All methods must be called on the main thread.
+ */
+public class BillingScheduler {
+    private final LyttleChunkLoader plugin;
+    private final Consumer<UUID> billingAction;
+    private final int maxPerTick;
+    private final List<Set<UUID>> wheel;
+    private final Map<UUID, Integer> slotOf = new HashMap<>();
+    // Players to bill as soon as the budget allows, in order
+    private final Set<UUID> due = new LinkedHashSet<>();
+    private BukkitTask driver;
+    private int cursor = 0;
+
+    private int lastTickBilled = 0;
+    private int peakTickBilled = 0;
+    private double averageTickBilled = 0.0;
+
+    /**
+     * @param intervalTicks Ticks between two billings of the same player
+     * @param maxPerTick    Maximum number of players billed in one tick
+     * @param billingAction Bills one player, may call cancel() for that player
+     */
+    public BillingScheduler(LyttleChunkLoader plugin, int intervalTicks, int maxPerTick, Consumer<UUID> billingAction) {
+        this.plugin = plugin;
+        this.billingAction = billingAction;
+        this.maxPerTick = Math.max(1, maxPerTick);
+        int size = Math.max(1, intervalTicks);
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Starts billing a player: billed as soon as the budget allows, then once every interval.
+     * Does nothing if the player is already scheduled.
+     */
+    public void schedule(UUID playerUUID) {
+        if (isScheduled(playerUUID)) return;
+        due.add(playerUUID);
+        ensureDriver();
+    }
+
+    public boolean isScheduled(UUID playerUUID) {
+        return slotOf.containsKey(playerUUID) || due.contains(playerUUID);
+    }
+
+    /**
+     * Stops billing a player.
+     */
+    public void cancel(UUID playerUUID) {
+        due.remove(playerUUID);
+        Integer slot = slotOf.remove(playerUUID);
+        if (slot != null) wheel.get(slot).remove(playerUUID);
+    }
+
+    /**
+     * Stops billing everyone and stops the driver.
+     */
+    public void cancelAll() {
+        due.clear();
+        slotOf.clear();
+        for (Set<UUID> slot : wheel) slot.clear();
+        if (driver != null) {
+            driver.cancel();
+            driver = null;
+        }
+    }
+
+    /**
+     * Number of players billed in the last tick.
+     */
+    public int getLastTickBilled() {
+        return lastTickBilled;
+    }
+
+    /**
+     * Highest number of players billed in a single tick since startup.
+     */
+    public int getPeakTickBilled() {
+        return peakTickBilled;
+    }
+
+    /**
+     * Moving average of players billed per tick.
+     */
+    public double getAverageTickBilled() {
+        return averageTickBilled;
+    }
+
+    /**
+     * Number of due players waiting for budget.
+     */
+    public int getBacklog() {
+        return due.size();
+    }
+
+    public int getScheduledCount() {
+        return slotOf.size() + due.size();
+    }
+
+    private void ensureDriver() {
+        if (driver != null || !plugin.isEnabled()) return;
+        driver = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        cursor = (cursor + 1) % wheel.size();
+        Set<UUID> slot = wheel.get(cursor);
+        for (UUID playerUUID : slot) {
+            slotOf.remove(playerUUID);
+            due.add(playerUUID);
+        }
+        slot.clear();
+
+        int billed = 0;
+        while (billed < maxPerTick && !due.isEmpty()) {
+            UUID playerUUID = due.iterator().next();
+            due.remove(playerUUID);
+            // Re-slot before billing, so the billing action can still cancel the player
+            slot.add(playerUUID);
+            slotOf.put(playerUUID, cursor);
+            billingAction.accept(playerUUID);
+            billed++;
+        }
+
+        if (billed > 0) {
+            plugin.metrics.recordSince("billing.tick", start);
+            plugin.metrics.add("billing.players", billed);
+        }
+        lastTickBilled = billed;
+        peakTickBilled = Math.max(peakTickBilled, billed);
+        averageTickBilled += (billed - averageTickBilled) * 0.01;
+    }
+}
@@ -0,0 +1,131 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Sends the chunk ownership grid to players, without building it on the main thread for every click.
+ * - Rendered grids are cached per (world, center chunk, viewer) in a small LRU cache.
+ * - A claim change only invalidates grids whose visible area (plus claim radius) contains the changed center.
+ * - On a cache miss, the nearby claims are copied on the main thread and the grid is rendered asynchronously,
+ *   then sent (and cached) back on the main thread.
+ *
+ * All public methods must be called on the main thread.
+ */
+public class ChunkGridVisualizer implements ClaimRegistry.Listener {
+    private static final int MAX_CACHED_GRIDS = 512;
+
+    private final LyttleChunkLoader plugin;
+    private final ClaimSpatialIndex spatialIndex;
+    private final ChunkRangeUtil chunkRangeUtil;
+    private final int influenceRadius;
+    private final Map<GridKey, Component> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GridKey, Component> eldest) {
+            return size() > MAX_CACHED_GRIDS;
+        }
+    };
+    // Bumped on every invalidation, so renders started before a claim change are never cached
+    private long generation = 0;
+
+    public ChunkGridVisualizer(LyttleChunkLoader plugin, ChunkRangeUtil chunkRangeUtil) {
+        this.plugin = plugin;
+        this.spatialIndex = plugin.claimRegistry.getSpatialIndex();
+        this.chunkRangeUtil = chunkRangeUtil;
+        this.influenceRadius = chunkRangeUtil.getVisualRadius() + chunkRangeUtil.getAreaRadius();
+        plugin.claimRegistry.addListener(this);
+    }
+
+    /**
+     * Sends the grid centered on the chunk of center to the player, highlighting it as just claimed if requested.
+     */
+    public void send(Location center, Player player, boolean highlightCenter) {
+        ChunkKey centerKey = ChunkKey.of(center);
+        UUID viewer = player.getUniqueId();
+        GridKey gridKey = new GridKey(centerKey, viewer, highlightCenter);
+
+        Component cached = cache.get(gridKey);
+        if (cached != null) {
+            plugin.metrics.increment("visualizer.cache_hits");
+            player.sendMessage(cached);
+            return;
+        }
+
+        // Detached copy of the claims that can influence the grid, rendered off the main thread
+        Long2ObjectMap<String> nearbyCenters = spatialIndex.getCentersWithin(
+                centerKey.getWorldIndex(), centerKey.getX(), centerKey.getZ(), influenceRadius
+        );
+        plugin.metrics.increment("visualizer.cache_misses");
+        String selfKey = viewer.toString();
+        long startGeneration = generation;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.nanoTime();
+            Component grid = chunkRangeUtil.renderChunkGrid(
+                    centerKey.getX(), centerKey.getZ(), selfKey, nearbyCenters, highlightCenter ? centerKey : null
+            );
+            plugin.metrics.recordSince("visualizer.render", start);
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (generation == startGeneration) cache.put(gridKey, grid);
+                Player online = Bukkit.getPlayer(viewer);
+                if (online != null) online.sendMessage(grid);
+            });
+        });
+    }
+
+    @Override
+    public void onClaimChanged(ChunkKey chunkKey) {
+        generation++;
+        Iterator<GridKey> it = cache.keySet().iterator();
+        while (it.hasNext()) {
+            ChunkKey gridCenter = it.next().center;
+            if (gridCenter.getWorldIndex() == chunkKey.getWorldIndex()
+                    && Math.abs(gridCenter.getX() - chunkKey.getX()) <= influenceRadius
+                    && Math.abs(gridCenter.getZ() - chunkKey.getZ()) <= influenceRadius) {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void onClaimsReloaded() {
+        generation++;
+        cache.clear();
+    }
+
+    private static final class GridKey {
+        private final ChunkKey center;
+        private final UUID viewer;
+        private final boolean highlightCenter;
+
+        private GridKey(ChunkKey center, UUID viewer, boolean highlightCenter) {
+            this.center = center;
+            this.viewer = viewer;
+            this.highlightCenter = highlightCenter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof GridKey)) return false;
+            GridKey other = (GridKey) o;
+            return highlightCenter == other.highlightCenter && center.equals(other.center) && viewer.equals(other.viewer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(center, viewer, highlightCenter);
+        }
+    }
+}
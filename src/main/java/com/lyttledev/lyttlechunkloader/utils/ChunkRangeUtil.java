@@ -1,14 +1,14 @@
 package com.lyttledev.lyttlechunkloader.utils;
 
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.JoinConfiguration;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextColor;
-import org.bukkit.Chunk;
-import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.entity.Player;
 
 import java.util.*;
 
@@ -32,164 +32,103 @@ public class ChunkRangeUtil {
         OTHER_AREA
     }
 
+    private static final Map<AreaRole, TextColor> COLORS = Map.of(
+            AreaRole.UNCLAIMED, NamedTextColor.GRAY,
+            AreaRole.JUST_CLAIMED_CENTER, NamedTextColor.DARK_GREEN,
+            AreaRole.JUST_CLAIMED_AREA, NamedTextColor.GREEN,
+            AreaRole.YOUR_CENTER, NamedTextColor.BLUE,
+            AreaRole.YOUR_AREA, NamedTextColor.AQUA,
+            AreaRole.OTHER_CENTER, NamedTextColor.DARK_RED,
+            AreaRole.OTHER_AREA, NamedTextColor.RED
+    );
+
+    // Legend, built once and shared by every rendered grid
+    private static final Component LEGEND = Component.join(JoinConfiguration.separator(Component.newline()), List.of(
+            Component.text("Legend:", NamedTextColor.WHITE),
+            Component.text("■ ", COLORS.get(AreaRole.JUST_CLAIMED_CENTER)).append(Component.text("Just Claimed Center", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.JUST_CLAIMED_AREA)).append(Component.text("Just Claimed Area", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.YOUR_CENTER)).append(Component.text("Your Claimed Center", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.YOUR_AREA)).append(Component.text("Your Claimed Area", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.OTHER_CENTER)).append(Component.text("Other's Claimed Center", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.OTHER_AREA)).append(Component.text("Other's Claimed Area", NamedTextColor.WHITE)),
+            Component.text("■ ", COLORS.get(AreaRole.UNCLAIMED)).append(Component.text("Unclaimed", NamedTextColor.WHITE))
+    ));
+
     public ChunkRangeUtil(int areaRadius, int visualRadius) {
         this.areaRadius = areaRadius;
         this.visualRadius = visualRadius;
     }
 
     /**
-     * Returns all chunk keys in a square area centered at (cx,cz) of the given world.
+     * Returns all packed chunk keys (see ChunkKey#pack) in a square area centered at (cx,cz).
      */
-    public Set<String> getAreaChunkKeys(World world, int cx, int cz) {
-        Set<String> area = new HashSet<>();
+    public LongSet getAreaChunks(int cx, int cz) {
+        int size = areaRadius * 2 + 1;
+        LongSet area = new LongOpenHashSet(size * size);
         for (int dz = -areaRadius; dz <= areaRadius; dz++) {
             for (int dx = -areaRadius; dx <= areaRadius; dx++) {
-                area.add(world.getName() + ":" + (cx + dx) + ":" + (cz + dz));
+                area.add(ChunkKey.pack(cx + dx, cz + dz));
             }
         }
         return area;
     }
 
     /**
-     * Returns the center chunk key for a location.
-     */
-    public String getChunkKey(Location location) {
-        Chunk chunk = location.getChunk();
-        return chunk.getWorld().getName() + ":" + chunk.getX() + ":" + chunk.getZ();
-    }
-
-    /**
-     * Returns the center chunk key for a world, cx, cz.
-     */
-    public String getChunkKey(World world, int cx, int cz) {
-        return world.getName() + ":" + cx + ":" + cz;
-    }
-
-    /**
-     * Builds a map of center chunk key to its area chunk keys, for all claimed centers.
-     */
-    public Map<String, Set<String>> buildCentersToAreas(Map<String, Set<String>> allClaims) {
-        Map<String, Set<String>> centerToArea = new HashMap<>();
-        for (Map.Entry<String, Set<String>> entry : allClaims.entrySet()) {
-            for (String centerKey : entry.getValue()) {
-                String[] parts = centerKey.split(":");
-                if (parts.length < 3) continue;
-                String worldName = parts[0];
-                int cx = Integer.parseInt(parts[1]);
-                int cz = Integer.parseInt(parts[2]);
-                World world = null;
-                for (World w : org.bukkit.Bukkit.getWorlds()) {
-                    if (w.getName().equals(worldName)) {
-                        world = w;
-                        break;
-                    }
-                }
-                if (world == null) continue;
-                centerToArea.put(centerKey, getAreaChunkKeys(world, cx, cz));
-            }
-        }
-        return centerToArea;
-    }
-
-    /**
-     * Checks if a chunk key is inside the area for any of the given centers.
+     * Returns true if (x,z) lies within the square area centered at (cx,cz).
      */
-    public boolean isInAnyArea(String chunkKey, Collection<Set<String>> allAreas) {
-        for (Set<String> area : allAreas) {
-            if (area.contains(chunkKey)) return true;
-        }
-        return false;
+    public boolean isInArea(int cx, int cz, int x, int z) {
+        return Math.abs(x - cx) <= areaRadius && Math.abs(z - cz) <= areaRadius;
     }
 
     /**
-     * Determines the AreaRole for a chunk key, given claims and options.
+     * Determines the AreaRole for chunk (cx,cz), given the claimed centers around it and options.
+     * nearbyCenters (packed center key -> owner) must contain every claimed center within areaRadius of (cx,cz).
      */
     public AreaRole getAreaRole(
-            String chunkKey,
+            int cx,
+            int cz,
             String selfKey,
-            Map<String, Set<String>> centerToAreas,
-            Map<String, String> centerToOwner,
-            String justClaimedCenter
+            Long2ObjectMap<String> nearbyCenters,
+            ChunkKey justClaimedCenter
     ) {
         // 1. Just claimed center/area
         if (justClaimedCenter != null) {
-            if (chunkKey.equals(justClaimedCenter)) return AreaRole.JUST_CLAIMED_CENTER;
-            Set<String> justClaimedArea = centerToAreas.get(justClaimedCenter);
-            if (justClaimedArea != null && justClaimedArea.contains(chunkKey))
-                return AreaRole.JUST_CLAIMED_AREA;
-        }
-        // 2. Your claim center/area
-        for (Map.Entry<String, String> e : centerToOwner.entrySet()) {
-            String centerKey = e.getKey();
-            String owner = e.getValue();
-            if (owner.equals(selfKey)) {
-                if (chunkKey.equals(centerKey)) return AreaRole.YOUR_CENTER;
-                Set<String> area = centerToAreas.get(centerKey);
-                if (area != null && area.contains(chunkKey)) return AreaRole.YOUR_AREA;
-            }
+            if (cx == justClaimedCenter.getX() && cz == justClaimedCenter.getZ()) return AreaRole.JUST_CLAIMED_CENTER;
+            if (isInArea(justClaimedCenter.getX(), justClaimedCenter.getZ(), cx, cz)) return AreaRole.JUST_CLAIMED_AREA;
         }
-        // 3. Other's claim center/area
-        for (Map.Entry<String, String> e : centerToOwner.entrySet()) {
-            String centerKey = e.getKey();
-            String owner = e.getValue();
-            if (!owner.equals(selfKey)) {
-                if (chunkKey.equals(centerKey)) return AreaRole.OTHER_CENTER;
-                Set<String> area = centerToAreas.get(centerKey);
-                if (area != null && area.contains(chunkKey)) return AreaRole.OTHER_AREA;
+        // 2. Your claim center/area, 3. Other's claim center/area
+        String centerOwner = nearbyCenters.get(ChunkKey.pack(cx, cz));
+        if (centerOwner != null && centerOwner.equals(selfKey)) return AreaRole.YOUR_CENTER;
+        boolean otherArea = false;
+        for (int dz = -areaRadius; dz <= areaRadius; dz++) {
+            for (int dx = -areaRadius; dx <= areaRadius; dx++) {
+                String owner = nearbyCenters.get(ChunkKey.pack(cx + dx, cz + dz));
+                if (owner == null) continue;
+                if (owner.equals(selfKey)) return AreaRole.YOUR_AREA;
+                otherArea = true;
             }
         }
+        if (centerOwner != null) return AreaRole.OTHER_CENTER;
+        if (otherArea) return AreaRole.OTHER_AREA;
         // 4. Unclaimed
         return AreaRole.UNCLAIMED;
     }
 
     /**
-     * Visualizes the chunk grid for a player with legend, using current area settings.
+     * Renders the chunk grid with legend, using current area settings.
      * Always shows a grid of (visualRadius*2+1)x(visualRadius*2+1). Default: 9x9 (visualRadius=4).
+     * Only reads its arguments, so it is safe to call off the main thread with a detached nearbyCenters map,
+     * which must contain every claimed center within visualRadius+areaRadius of (px,pz).
      */
-    public void sendChunkGridVisualizer(
-            Location center,
-            Player player,
+    public Component renderChunkGrid(
+            int px,
+            int pz,
             String selfKey,
-            Map<String, Set<String>> allClaims,
-            String justClaimedCenter
+            Long2ObjectMap<String> nearbyCenters,
+            ChunkKey justClaimedCenter
     ) {
-        Chunk centerChunk = center.getChunk();
-        World world = center.getWorld();
-        int px = centerChunk.getX();
-        int pz = centerChunk.getZ();
-
-        // Map of centerKey -> owner
-        Map<String, String> centerToOwner = new HashMap<>();
-        for (Map.Entry<String, Set<String>> entry : allClaims.entrySet()) {
-            String playerKey = entry.getKey();
-            for (String centerKey : entry.getValue()) {
-                centerToOwner.put(centerKey, playerKey);
-            }
-        }
-        // Map of centerKey -> area keys
-        Map<String, Set<String>> centerToAreas = buildCentersToAreas(allClaims);
-
-        // Legend
-        final Map<AreaRole, TextColor> COLORS = Map.of(
-                AreaRole.UNCLAIMED, NamedTextColor.GRAY,
-                AreaRole.JUST_CLAIMED_CENTER, NamedTextColor.DARK_GREEN,
-                AreaRole.JUST_CLAIMED_AREA, NamedTextColor.GREEN,
-                AreaRole.YOUR_CENTER, NamedTextColor.BLUE,
-                AreaRole.YOUR_AREA, NamedTextColor.AQUA,
-                AreaRole.OTHER_CENTER, NamedTextColor.DARK_RED,
-                AreaRole.OTHER_AREA, NamedTextColor.RED
-        );
-        List<Component> legend = Arrays.asList(
-                Component.text("Legend:", NamedTextColor.WHITE),
-                Component.text("■ ", COLORS.get(AreaRole.JUST_CLAIMED_CENTER)).append(Component.text("Just Claimed Center", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.JUST_CLAIMED_AREA)).append(Component.text("Just Claimed Area", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.YOUR_CENTER)).append(Component.text("Your Claimed Center", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.YOUR_AREA)).append(Component.text("Your Claimed Area", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.OTHER_CENTER)).append(Component.text("Other's Claimed Center", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.OTHER_AREA)).append(Component.text("Other's Claimed Area", NamedTextColor.WHITE)),
-                Component.text("■ ", COLORS.get(AreaRole.UNCLAIMED)).append(Component.text("Unclaimed", NamedTextColor.WHITE))
-        );
-        List<Component> lines = new ArrayList<>(legend);
+        List<Component> lines = new ArrayList<>(visualRadius * 2 + 3);
+        lines.add(LEGEND);
 
         // Build grid (always visualRadius*2+1, e.g. 9x9 for visualRadius=4)
         for (int dz = -visualRadius; dz <= visualRadius; dz++) {
@@ -197,15 +136,14 @@ public class ChunkRangeUtil {
             for (int dx = -visualRadius; dx <= visualRadius; dx++) {
                 int cx = px + dx;
                 int cz = pz + dz;
-                String chunkKey = world.getName() + ":" + cx + ":" + cz;
                 boolean isPlayer = (dx == 0 && dz == 0);
                 String symbol = isPlayer ? "+" : "■";
 
                 AreaRole role = getAreaRole(
-                    chunkKey,
+                    cx,
+                    cz,
                     selfKey,
-                    centerToAreas,
-                    centerToOwner,
+                    nearbyCenters,
                     justClaimedCenter
                 );
                 TextColor color = COLORS.get(role);
@@ -216,8 +154,16 @@ public class ChunkRangeUtil {
         if (justClaimedCenter != null) {
             lines.add(Component.text(
                 "Chunks loaded (" + (areaRadius * 2 + 1) + "x" + (areaRadius * 2 + 1) + " area) centered at: ", NamedTextColor.GREEN
-            ).append(Component.text(justClaimedCenter, NamedTextColor.WHITE)));
+            ).append(Component.text(justClaimedCenter.toString(), NamedTextColor.WHITE)));
         }
-        player.sendMessage(Component.join(JoinConfiguration.separator(Component.newline()), lines));
+        return Component.join(JoinConfiguration.separator(Component.newline()), lines);
+    }
+
+    public int getAreaRadius() {
+        return areaRadius;
+    }
+
+    public int getVisualRadius() {
+        return visualRadius;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,582 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reference-counts plugin chunk tickets across all active chunk loaders.
+ * - Every active loader center contributes one reference to each chunk in its area.
+ * - Bukkit tickets are only added on a 0 -> 1 transition and only removed on a 1 -> 0 transition,
+ *   so overlapping loaders (of any owner) keep shared chunks loaded.
+ * - Changes are queued and applied at the end of the tick, so a chunk that is released and re-acquired
+ *   in the same tick never loses its ticket.
+ * - New tickets are only attached once the chunk has been loaded through Paper's async chunk API, so adding a
+ *   ticket never loads (or generates) a chunk on the main thread. With tickets.generate_chunks: false,
+ *   chunks that were never generated are not loaded at all.
+ * - The queue is drained under a per-tick budget (tickets.max_changes_per_tick, tickets.max_millis_per_tick);
+ *   the rest carries over to the next tick, so mass activations (e.g. a join storm) never stall a single tick.
+ * - Loaders can be suspended for one or more reasons (they stay active but hold no tickets until every reason is
+ *   lifted), reduced to their center chunk, and all areas can be shrunk to their center chunk.
+ * - Optional caps (limits.max_chunks, limits.max_chunks_per_world) bound the number of referenced chunks. When a cap
+ *   is exceeded, the least recently touched loaders are suspended (evicted) until it fits, and resumed once there is room.
+ * - All state is partitioned per world, so a world that unloads drops its loaders, tickets and queue in one go
+ *   (unloadWorld), without touching the other worlds.
+ *
+ * All methods must be called on the main thread.
+ */
+public class ChunkTicketManager {
+    /**
+     * Told about every loader that becomes active, so schedulers can suspend it before its tickets are applied.
+     */
+    public interface Listener {
+        void onLoaderActivated(ChunkKey centerKey);
+    }
+
+    /**
+     * Why a loader is suspended. A loader only runs again once all of its reasons are lifted.
+     */
+    public enum SuspendReason {
+        GOVERNOR,
+        IDLE,
+        DUTY_CYCLE,
+        CAP;
+
+        private int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    /**
+     * Loader and ticket state of one world.
+     */
+    private static final class WorldTickets {
+        // Packed center keys of active loaders
+        private final LongSet activeCenters = new LongOpenHashSet();
+        // Packed center keys of suspended active loaders -> SuspendReason bits, these don't contribute any references
+        private final Long2IntOpenHashMap suspended = new Long2IntOpenHashMap();
+        // Packed center keys of active loaders whose area is reduced to the center chunk
+        private final LongSet reduced = new LongOpenHashSet();
+        // Packed chunk key -> number of active loaders covering it
+        private final Long2IntOpenHashMap references = new Long2IntOpenHashMap();
+        // Packed chunk keys that currently hold a Bukkit plugin ticket
+        private final LongSet ticketed = new LongOpenHashSet();
+        // Packed chunk keys waiting for their async chunk load before getting a ticket
+        private final LongSet loading = new LongOpenHashSet();
+        // Packed chunk keys whose reference count changed and that still have to be applied, in order
+        private final LongLinkedOpenHashSet dirty = new LongLinkedOpenHashSet();
+        // Set once the state is dropped, async loads finishing afterwards are ignored
+        private boolean released = false;
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final ChunkRangeUtil chunkRangeUtil;
+    // World index -> state of that world
+    private final Int2ObjectMap<WorldTickets> worlds = new Int2ObjectOpenHashMap<>();
+    private final int maxChangesPerTick;
+    private final long maxNanosPerTick;
+    private final boolean generateChunks;
+    private boolean flushScheduled = false;
+    // Whether loader areas are shrunk to their center chunk
+    private boolean shrunk = false;
+    private final int maxChunks;
+    private final int maxChunksPerWorld;
+    // Active loaders, least recently touched first
+    private final Set<ChunkKey> recency = new LinkedHashSet<>();
+    // Loaders suspended to stay within the caps, in order of eviction
+    private final Set<ChunkKey> evicted = new LinkedHashSet<>();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public ChunkTicketManager(LyttleChunkLoader plugin, ChunkRangeUtil chunkRangeUtil) {
+        this.plugin = plugin;
+        this.chunkRangeUtil = chunkRangeUtil;
+        this.maxChangesPerTick = Math.max(1, plugin.config.getInt("tickets.max_changes_per_tick"));
+        this.maxNanosPerTick = Math.max(1L, (long) (plugin.config.getDouble("tickets.max_millis_per_tick") * 1_000_000L));
+        this.generateChunks = plugin.config.getBoolean("tickets.generate_chunks");
+        this.maxChunks = plugin.config.getInt("limits.max_chunks");
+        this.maxChunksPerWorld = plugin.config.getInt("limits.max_chunks_per_world");
+    }
+
+    /**
+     * Returns false if the loader area around centerKey would need new terrain to be generated
+     * while tickets.generate_chunks is disabled.
+     */
+    public boolean canActivate(ChunkKey centerKey) {
+        if (generateChunks) return true;
+        World world = centerKey.getWorld();
+        if (world == null) return false;
+        LongIterator it = chunkRangeUtil.getAreaChunks(centerKey.getX(), centerKey.getZ()).iterator();
+        while (it.hasNext()) {
+            long chunk = it.nextLong();
+            if (!world.isChunkGenerated(ChunkKey.unpackX(chunk), ChunkKey.unpackZ(chunk))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Activates the loader centered at centerKey. Does nothing if it is already active.
+     */
+    public void activate(ChunkKey centerKey) {
+        WorldTickets state = worlds.computeIfAbsent(centerKey.getWorldIndex(), i -> new WorldTickets());
+        if (!state.activeCenters.add(centerKey.getPacked())) return;
+        touch(centerKey);
+        adjustArea(state, centerKey.getPacked(), 1);
+        notifyActivated(centerKey);
+    }
+
+    /**
+     * Activates all given loader centers of one world at once. Returns the number of newly activated loaders.
+     */
+    public int activateAll(int worldIndex, LongCollection centers) {
+        if (centers.isEmpty()) return 0;
+        WorldTickets state = worlds.computeIfAbsent(worldIndex, i -> new WorldTickets());
+        int activated = 0;
+        LongIterator it = centers.iterator();
+        while (it.hasNext()) {
+            long center = it.nextLong();
+            if (!state.activeCenters.add(center)) continue;
+            ChunkKey centerKey = ChunkKey.of(worldIndex, center);
+            touch(centerKey);
+            adjustArea(state, center, 1);
+            notifyActivated(centerKey);
+            activated++;
+        }
+        return activated;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private void notifyActivated(ChunkKey centerKey) {
+        for (Listener listener : listeners) {
+            listener.onLoaderActivated(centerKey);
+        }
+    }
+
+    /**
+     * Deactivates the loader centered at centerKey. Does nothing if it isn't active.
+     */
+    public void deactivate(ChunkKey centerKey) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        if (state == null || !state.activeCenters.remove(centerKey.getPacked())) return;
+        // A suspended loader holds no references
+        if (state.suspended.remove(centerKey.getPacked()) == 0) adjustArea(state, centerKey.getPacked(), -1);
+        state.reduced.remove(centerKey.getPacked());
+        recency.remove(centerKey);
+        evicted.remove(centerKey);
+    }
+
+    /**
+     * Marks an active loader as recently used (e.g. its owner came back), so caps evict it last.
+     */
+    public void touch(ChunkKey centerKey) {
+        if (!isActive(centerKey)) return;
+        recency.remove(centerKey);
+        recency.add(centerKey);
+    }
+
+    /**
+     * Suspends an active loader for a reason: it stays active, but its chunks lose their tickets until every
+     * reason is lifted. Returns false if the loader isn't active or already suspended for this reason.
+     */
+    public boolean suspend(ChunkKey centerKey, SuspendReason reason) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        long center = centerKey.getPacked();
+        if (state == null || !state.activeCenters.contains(center)) return false;
+        int reasons = state.suspended.get(center);
+        if ((reasons & reason.bit()) != 0) return false;
+        state.suspended.put(center, reasons | reason.bit());
+        if (reasons == 0) adjustArea(state, center, -1);
+        return true;
+    }
+
+    /**
+     * Lifts one reason of a suspended loader; it runs again once no reason is left.
+     * Returns false if it isn't suspended for this reason (anymore).
+     */
+    public boolean resume(ChunkKey centerKey, SuspendReason reason) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        long center = centerKey.getPacked();
+        if (state == null) return false;
+        int reasons = state.suspended.get(center);
+        if ((reasons & reason.bit()) == 0) return false;
+        reasons &= ~reason.bit();
+        if (reasons != 0) {
+            state.suspended.put(center, reasons);
+        } else {
+            state.suspended.remove(center);
+            adjustArea(state, center, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Reduces the area of an active loader to its center chunk, or restores its full area.
+     * Returns false if the loader isn't active or already in that state.
+     */
+    public boolean setReduced(ChunkKey centerKey, boolean reduce) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        long center = centerKey.getPacked();
+        if (state == null || !state.activeCenters.contains(center) || state.reduced.contains(center) == reduce) return false;
+        boolean running = !state.suspended.containsKey(center);
+        if (running) adjustArea(state, center, -1);
+        if (reduce) state.reduced.add(center);
+        else state.reduced.remove(center);
+        if (running) adjustArea(state, center, 1);
+        return true;
+    }
+
+    public boolean isReduced(ChunkKey centerKey) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        return state != null && state.reduced.contains(centerKey.getPacked());
+    }
+
+    /**
+     * Returns true if an active loader covers the packed chunk. Cheap enough to call from frequent events.
+     */
+    public boolean isReferenced(int worldIndex, long chunk) {
+        WorldTickets state = worlds.get(worldIndex);
+        return state != null && state.references.containsKey(chunk);
+    }
+
+    public boolean isSuspended(ChunkKey centerKey) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        return state != null && state.suspended.containsKey(centerKey.getPacked());
+    }
+
+    public boolean isSuspended(ChunkKey centerKey, SuspendReason reason) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        return state != null && (state.suspended.get(centerKey.getPacked()) & reason.bit()) != 0;
+    }
+
+    /**
+     * Returns all active loaders that aren't suspended.
+     */
+    public List<ChunkKey> getRunningLoaders() {
+        List<ChunkKey> running = new ArrayList<>();
+        for (Int2ObjectMap.Entry<WorldTickets> entry : worlds.int2ObjectEntrySet()) {
+            WorldTickets state = entry.getValue();
+            LongIterator it = state.activeCenters.iterator();
+            while (it.hasNext()) {
+                long center = it.nextLong();
+                if (!state.suspended.containsKey(center)) running.add(ChunkKey.of(entry.getIntKey(), center));
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Shrinks the area of every running loader to its center chunk, or restores the full areas.
+     */
+    public void setShrunk(boolean shrunk) {
+        if (this.shrunk == shrunk) return;
+        for (WorldTickets state : worlds.values()) {
+            LongIterator it = state.activeCenters.iterator();
+            while (it.hasNext()) {
+                long center = it.nextLong();
+                if (!state.suspended.containsKey(center)) adjustArea(state, center, -1);
+            }
+        }
+        this.shrunk = shrunk;
+        for (WorldTickets state : worlds.values()) {
+            LongIterator it = state.activeCenters.iterator();
+            while (it.hasNext()) {
+                long center = it.nextLong();
+                if (!state.suspended.containsKey(center)) adjustArea(state, center, 1);
+            }
+        }
+    }
+
+    public boolean isShrunk() {
+        return shrunk;
+    }
+
+    /**
+     * Returns the share of a loader's area that is released while the areas are shrunk (8/9 for a 3x3 area).
+     */
+    public double getShrinkLoss() {
+        return 1.0 - 1.0 / chunkRangeUtil.getAreaChunks(0, 0).size();
+    }
+
+    /**
+     * Returns the number of suspended loaders.
+     */
+    public int getSuspendedCount() {
+        int count = 0;
+        for (WorldTickets state : worlds.values()) count += state.suspended.size();
+        return count;
+    }
+
+    public boolean isActive(ChunkKey centerKey) {
+        WorldTickets state = worlds.get(centerKey.getWorldIndex());
+        return state != null && state.activeCenters.contains(centerKey.getPacked());
+    }
+
+    /**
+     * Returns the number of chunks currently holding a plugin ticket.
+     */
+    public int getTicketCount() {
+        int count = 0;
+        for (WorldTickets state : worlds.values()) count += state.ticketed.size();
+        return count;
+    }
+
+    /**
+     * Returns the number of active loader centers.
+     */
+    public int getActiveLoaderCount() {
+        int count = 0;
+        for (WorldTickets state : worlds.values()) count += state.activeCenters.size();
+        return count;
+    }
+
+    /**
+     * Returns the number of active loader centers per world name.
+     */
+    public Map<String, Integer> getActiveLoaderCountsByWorld() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Int2ObjectMap.Entry<WorldTickets> entry : worlds.int2ObjectEntrySet()) {
+            String worldName = ChunkKey.worldName(entry.getIntKey());
+            int active = entry.getValue().activeCenters.size();
+            if (worldName != null && active > 0) counts.put(worldName, active);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of running loaders covering the packed chunk.
+     */
+    public int getReferenceCount(int worldIndex, long chunk) {
+        WorldTickets state = worlds.get(worldIndex);
+        return state != null ? state.references.get(chunk) : 0;
+    }
+
+    /**
+     * Returns the number of loaders evicted to stay within the caps.
+     */
+    public int getEvictedCount() {
+        return evicted.size();
+    }
+
+    /**
+     * Returns the number of chunks covered by at least one running loader.
+     */
+    public int getReferencedCount() {
+        int count = 0;
+        for (WorldTickets state : worlds.values()) count += state.references.size();
+        return count;
+    }
+
+    /**
+     * Returns the number of chunks whose ticket change is still queued.
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (WorldTickets state : worlds.values()) count += state.dirty.size();
+        return count;
+    }
+
+    /**
+     * Applies queued reference changes to Bukkit within the per-tick budget: adds tickets for chunks that became
+     * referenced, removes tickets for chunks that are no longer referenced. Schedules itself again if work is left.
+     */
+    public void flush() {
+        flushScheduled = false;
+        long start = System.nanoTime();
+        try {
+            if (maxChunks > 0 || maxChunksPerWorld > 0) enforceCaps();
+            drainQueue(start + maxNanosPerTick);
+        } finally {
+            plugin.metrics.recordSince("tickets.flush", start);
+        }
+    }
+
+    /**
+     * Evicts the least recently touched running loaders while a cap is exceeded; otherwise resumes evicted loaders
+     * that fit again. Runs before the queue is drained, so tickets beyond a cap are never attached.
+     */
+    private void enforceCaps() {
+        int total = getReferencedCount();
+        if (isOverCap(total)) {
+            Iterator<ChunkKey> it = recency.iterator();
+            while (it.hasNext() && isOverCap(total)) {
+                ChunkKey centerKey = it.next();
+                WorldTickets state = worlds.get(centerKey.getWorldIndex());
+                if (state == null || state.suspended.containsKey(centerKey.getPacked())) continue;
+                if (!isOver(total, maxChunks) && !isOver(state.references.size(), maxChunksPerWorld)) continue;
+                int before = state.references.size();
+                if (!suspend(centerKey, SuspendReason.CAP)) continue;
+                evicted.add(centerKey);
+                total -= before - state.references.size();
+                plugin.metrics.increment("tickets.evictions");
+            }
+            return;
+        }
+
+        int areaSize = (2 * chunkRangeUtil.getAreaRadius() + 1) * (2 * chunkRangeUtil.getAreaRadius() + 1);
+        Iterator<ChunkKey> it = evicted.iterator();
+        while (it.hasNext()) {
+            ChunkKey centerKey = it.next();
+            WorldTickets state = worlds.get(centerKey.getWorldIndex());
+            if (state == null || !isSuspended(centerKey, SuspendReason.CAP)) {
+                it.remove();
+                continue;
+            }
+            // Worst case, every chunk of its area is new
+            int size = shrunk || state.reduced.contains(centerKey.getPacked()) ? 1 : areaSize;
+            if (isOver(total + size, maxChunks) || isOver(state.references.size() + size, maxChunksPerWorld)) continue;
+            int before = state.references.size();
+            it.remove();
+            resume(centerKey, SuspendReason.CAP);
+            total += state.references.size() - before;
+        }
+    }
+
+    private boolean isOverCap(int total) {
+        if (isOver(total, maxChunks)) return true;
+        if (maxChunksPerWorld <= 0) return false;
+        for (WorldTickets state : worlds.values()) {
+            if (state.references.size() > maxChunksPerWorld) return true;
+        }
+        return false;
+    }
+
+    private static boolean isOver(int count, int cap) {
+        return cap > 0 && count > cap;
+    }
+
+    private void drainQueue(long deadline) {
+        int applied = 0;
+        ObjectIterator<Int2ObjectMap.Entry<WorldTickets>> entries = worlds.int2ObjectEntrySet().iterator();
+        while (entries.hasNext()) {
+            Int2ObjectMap.Entry<WorldTickets> entry = entries.next();
+            WorldTickets state = entry.getValue();
+            if (state.dirty.isEmpty()) continue;
+            int worldIndex = entry.getIntKey();
+            World world = ChunkKey.world(worldIndex);
+            if (world == null) {
+                // Not loaded (anymore), its loaders come back through activateAll once it is
+                state.released = true;
+                entries.remove();
+                continue;
+            }
+
+            LongLinkedOpenHashSet pending = state.dirty;
+            while (!pending.isEmpty()) {
+                if (applied >= maxChangesPerTick || System.nanoTime() >= deadline) {
+                    // Out of budget, continue next tick
+                    scheduleFlush();
+                    return;
+                }
+                long chunk = pending.removeFirstLong();
+                boolean wanted = state.references.get(chunk) > 0;
+                if (wanted && !state.ticketed.contains(chunk)) {
+                    int cx = ChunkKey.unpackX(chunk);
+                    int cz = ChunkKey.unpackZ(chunk);
+                    if (world.isChunkLoaded(cx, cz)) {
+                        state.ticketed.add(chunk);
+                        world.addPluginChunkTicket(cx, cz, plugin);
+                        plugin.metrics.increment("tickets.added");
+                        applied++;
+                    } else if (state.loading.add(chunk)) {
+                        // Load off the main thread first, the ticket is attached once the chunk is there
+                        world.getChunkAtAsync(cx, cz, generateChunks).thenAccept(loaded -> onChunkAcquired(state, world, chunk, loaded != null));
+                        applied++;
+                    }
+                } else if (!wanted && state.ticketed.remove(chunk)) {
+                    world.removePluginChunkTicket(ChunkKey.unpackX(chunk), ChunkKey.unpackZ(chunk), plugin);
+                    plugin.metrics.increment("tickets.removed");
+                    applied++;
+                }
+            }
+            if (state.activeCenters.isEmpty() && state.ticketed.isEmpty() && state.loading.isEmpty()) {
+                state.released = true;
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread when an async chunk load finished. Attaches the ticket if the chunk is still wanted.
+     */
+    private void onChunkAcquired(WorldTickets state, World world, long chunk, boolean loaded) {
+        // Released in the meantime, or the world was unloaded
+        if (!state.loading.remove(chunk) || state.released) return;
+        if (!loaded || state.references.get(chunk) <= 0) return;
+        if (state.ticketed.add(chunk)) {
+            world.addPluginChunkTicket(ChunkKey.unpackX(chunk), ChunkKey.unpackZ(chunk), plugin);
+            plugin.metrics.increment("tickets.added");
+        }
+    }
+
+    /**
+     * Drops all loaders and tickets of a world that is being unloaded, in one go.
+     * Returns the packed centers that were active, so they can be reactivated if the world loads again.
+     */
+    public LongSet unloadWorld(World world) {
+        int worldIndex = ChunkKey.indexOf(world);
+        WorldTickets state = worlds.remove(worldIndex);
+        if (state == null) return new LongOpenHashSet();
+        recency.removeIf(centerKey -> centerKey.getWorldIndex() == worldIndex);
+        evicted.removeIf(centerKey -> centerKey.getWorldIndex() == worldIndex);
+        state.released = true;
+        if (!state.ticketed.isEmpty()) {
+            world.removePluginChunkTickets(plugin);
+            plugin.metrics.add("tickets.removed", state.ticketed.size());
+        }
+        return state.activeCenters;
+    }
+
+    /**
+     * Removes every plugin ticket and forgets all active loaders.
+     */
+    public void releaseAll() {
+        for (Int2ObjectMap.Entry<WorldTickets> entry : worlds.int2ObjectEntrySet()) {
+            entry.getValue().released = true;
+            World world = ChunkKey.world(entry.getIntKey());
+            if (world != null && !entry.getValue().ticketed.isEmpty()) world.removePluginChunkTickets(plugin);
+        }
+        worlds.clear();
+        recency.clear();
+        evicted.clear();
+    }
+
+    private void adjustArea(WorldTickets state, long center, int delta) {
+        LongSet area = shrunk || state.reduced.contains(center) ? LongSets.singleton(center) : chunkRangeUtil.getAreaChunks(ChunkKey.unpackX(center), ChunkKey.unpackZ(center));
+        LongIterator it = area.iterator();
+        while (it.hasNext()) {
+            long chunk = it.nextLong();
+            int count = state.references.addTo(chunk, delta) + delta;
+            if (count <= 0) state.references.remove(chunk);
+            // Only 0 <-> 1 transitions can change whether a ticket is needed
+            if ((delta > 0 && count == 1) || (delta < 0 && count <= 0)) state.dirty.add(chunk);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || !plugin.isEnabled()) return;
+        flushScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::flush);
+    }
+}
@@ -0,0 +1,427 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttleutils.types.YamlConfig;
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Alternative storage engine for claim data (storage.engine: journal).
+ * - Every claim, unclaim and position change is appended as a small binary record to claims.journal.
+ * - After storage.journal_compact_records records, the full state is written as a compact binary
+ *   claims.snapshot (temp file + atomic rename) and the journal is truncated.
+ * - Startup replays the snapshot plus the journal and keeps appending to it. A torn record at the end of the
+ *   journal (crash mid-write) is ignored and cut off. The journal is only ever truncated after a successful compaction.
+ * - The first start with this engine migrates the existing chunks.yml and positions.yml once.
+ *
+ * All appends are encoded on the main thread and written in order on a single background thread.
+ */
+public class ClaimJournal {
+    private static final int SNAPSHOT_MAGIC = 0x4C434C53; // "LCLS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte OP_CLAIM = 1;
+    private static final byte OP_UNCLAIM = 2;
+    private static final byte OP_POSITION = 3;
+    private static final byte OP_REMOVE_POSITION = 4;
+
+    /**
+     * Claim data as replayed from disk, or as handed to a compaction.
+     */
+    public static final class State {
+        public final Map<ChunkKey, String> claims;
+        public final Map<ChunkKey, int[]> positions;
+
+        public State(Map<ChunkKey, String> claims, Map<ChunkKey, int[]> positions) {
+            this.claims = claims;
+            this.positions = positions;
+        }
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final Path snapshotPath;
+    private final Path snapshotTemp;
+    private final Path journalPath;
+    private final int compactThreshold;
+    private final ExecutorService writer;
+    private DataOutputStream journalOut; // Only used on the writer thread
+    private Supplier<State> snapshotSource;
+    private State loaded;
+    private int recordsSinceCompaction = 0;
+    private boolean compactionScheduled = false;
+
+    public ClaimJournal(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.snapshotPath = new File(plugin.getDataFolder(), "claims.snapshot").toPath();
+        this.snapshotTemp = new File(plugin.getDataFolder(), "claims.snapshot.tmp").toPath();
+        this.journalPath = new File(plugin.getDataFolder(), "claims.journal").toPath();
+        this.compactThreshold = Math.max(100, plugin.config.getInt("storage.journal_compact_records"));
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LyttleChunkLoader-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!Files.exists(snapshotPath) && !Files.exists(journalPath)) {
+            this.loaded = migrateFromYaml();
+            writeSnapshot(loaded);
+        } else {
+            this.loaded = replay();
+        }
+        // Append to the replayed journal, it is only truncated once a compaction has written its records to a snapshot
+        writer.execute(() -> openJournal(false));
+    }
+
+    /**
+     * Sets where compactions take the current full state from (called on the main thread).
+     */
+    public void setSnapshotSource(Supplier<State> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    /**
+     * Returns the claims (center -> owner key) as replayed on startup or the last reload.
+     */
+    public Map<ChunkKey, String> getLoadedClaims() {
+        return loaded.claims;
+    }
+
+    /**
+     * Returns the lodestone positions as replayed on startup or the last reload.
+     */
+    public Map<ChunkKey, int[]> getLoadedPositions() {
+        return loaded.positions;
+    }
+
+    /**
+     * Waits for pending writes and replays the data from disk again.
+     */
+    public void reload() {
+        awaitWriter();
+        loaded = replay();
+    }
+
+    public void appendClaim(String ownerKey, ChunkKey chunkKey) {
+        UUID owner;
+        try {
+            owner = UUID.fromString(ownerKey);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Not journaling claim with invalid owner " + ownerKey);
+            return;
+        }
+        append(encode(OP_CLAIM, chunkKey, out -> {
+            out.writeLong(owner.getMostSignificantBits());
+            out.writeLong(owner.getLeastSignificantBits());
+        }));
+    }
+
+    public void appendUnclaim(ChunkKey chunkKey) {
+        append(encode(OP_UNCLAIM, chunkKey, out -> { }));
+    }
+
+    public void appendPosition(ChunkKey chunkKey, int[] coords) {
+        append(encode(OP_POSITION, chunkKey, out -> {
+            out.writeInt(coords[0]);
+            out.writeInt(coords[1]);
+            out.writeInt(coords[2]);
+        }));
+    }
+
+    public void appendRemovePosition(ChunkKey chunkKey) {
+        append(encode(OP_REMOVE_POSITION, chunkKey, out -> { }));
+    }
+
+    /**
+     * Writes a fresh snapshot of the current state and truncates the journal.
+     */
+    public void compact() {
+        compactionScheduled = false;
+        if (snapshotSource == null) return;
+        State state = snapshotSource.get();
+        recordsSinceCompaction = 0;
+        writer.execute(() -> {
+            // Only truncate once everything in the journal is safely part of the snapshot
+            if (writeSnapshot(state)) openJournal(true);
+        });
+    }
+
+    /**
+     * Waits until all pending records are on disk.
+     */
+    public void flush() {
+        awaitWriter();
+    }
+
+    /**
+     * Compacts, waits for all writes and closes the journal.
+     */
+    public void shutdown() {
+        compact();
+        awaitWriter();
+        writer.execute(this::closeJournal);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private byte[] encode(byte op, ChunkKey chunkKey, PayloadWriter payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            out.writeUTF(chunkKey.getWorldName());
+            out.writeInt(chunkKey.getX());
+            out.writeInt(chunkKey.getZ());
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void append(byte[] record) {
+        plugin.metrics.increment("storage.journal_records");
+        writer.execute(() -> {
+            try {
+                journalOut.write(record);
+                journalOut.flush();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to append to claims.journal: " + e.getMessage());
+            }
+        });
+        if (++recordsSinceCompaction >= compactThreshold && !compactionScheduled && plugin.isEnabled()) {
+            compactionScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::compact);
+        }
+    }
+
+    private void awaitWriter() {
+        try {
+            writer.submit(() -> { }).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Timed out waiting for claims.journal to be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * (Re)opens the journal for appending, optionally truncating it. Runs on the writer thread.
+     */
+    private void openJournal(boolean truncate) {
+        closeJournal();
+        try {
+            journalOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open claims.journal: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        if (journalOut == null) return;
+        try {
+            journalOut.close();
+        } catch (IOException ignored) {
+            // Nothing left to save
+        }
+        journalOut = null;
+    }
+
+    private State replay() {
+        Map<ChunkKey, String> claims = new HashMap<>();
+        Map<ChunkKey, int[]> positions = new HashMap<>();
+        readSnapshot(claims, positions);
+        int records = readJournal(claims, positions);
+        if (records > 0) {
+            plugin.getLogger().info("Replayed " + records + " claim journal records.");
+        }
+        return new State(claims, positions);
+    }
+
+    private void readSnapshot(Map<ChunkKey, String> claims, Map<ChunkKey, int[]> positions) {
+        if (!Files.exists(snapshotPath)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                plugin.getLogger().severe("claims.snapshot has an unknown format, ignoring it.");
+                return;
+            }
+            int worldCount = in.readInt();
+            int[] worldIndexes = new int[worldCount];
+            for (int i = 0; i < worldCount; i++) {
+                worldIndexes[i] = ChunkKey.worldIndex(in.readUTF());
+            }
+            int claimCount = in.readInt();
+            for (int i = 0; i < claimCount; i++) {
+                ChunkKey chunkKey = ChunkKey.of(worldIndexes[in.readInt()], in.readLong());
+                claims.put(chunkKey, new UUID(in.readLong(), in.readLong()).toString());
+            }
+            int positionCount = in.readInt();
+            for (int i = 0; i < positionCount; i++) {
+                ChunkKey chunkKey = ChunkKey.of(worldIndexes[in.readInt()], in.readLong());
+                positions.put(chunkKey, new int[]{in.readInt(), in.readInt(), in.readInt()});
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read claims.snapshot: " + e.getMessage());
+        }
+    }
+
+    private int readJournal(Map<ChunkKey, String> claims, Map<ChunkKey, int[]> positions) {
+        if (!Files.exists(journalPath)) return 0;
+        byte[] data;
+        try {
+            data = Files.readAllBytes(journalPath);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read claims.journal: " + e.getMessage());
+            return 0;
+        }
+
+        int records = 0;
+        int validLength = 0;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            while (validLength < data.length) {
+                byte op = in.readByte();
+                ChunkKey chunkKey = ChunkKey.of(ChunkKey.worldIndex(in.readUTF()), ChunkKey.pack(in.readInt(), in.readInt()));
+                switch (op) {
+                    case OP_CLAIM -> claims.put(chunkKey, new UUID(in.readLong(), in.readLong()).toString());
+                    case OP_UNCLAIM -> claims.remove(chunkKey);
+                    case OP_POSITION -> positions.put(chunkKey, new int[]{in.readInt(), in.readInt(), in.readInt()});
+                    case OP_REMOVE_POSITION -> positions.remove(chunkKey);
+                    default -> throw new EOFException("Unknown record type " + op);
+                }
+                records++;
+                validLength = data.length - in.available();
+            }
+        } catch (IOException e) {
+            // Torn or corrupt tail, keep everything before it
+            plugin.getLogger().warning("Ignoring " + (data.length - validLength) + " trailing bytes in claims.journal.");
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            } catch (IOException truncateError) {
+                plugin.getLogger().severe("Failed to truncate claims.journal: " + truncateError.getMessage());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes the state as claims.snapshot through a temp file and an atomic rename. Returns false if it failed.
+     */
+    private boolean writeSnapshot(State state) {
+        Map<Integer, Integer> worldTable = new LinkedHashMap<>();
+        for (ChunkKey chunkKey : state.claims.keySet()) worldTable.putIfAbsent(chunkKey.getWorldIndex(), worldTable.size());
+        for (ChunkKey chunkKey : state.positions.keySet()) worldTable.putIfAbsent(chunkKey.getWorldIndex(), worldTable.size());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotTemp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(worldTable.size());
+            for (Integer worldIndex : worldTable.keySet()) {
+                out.writeUTF(ChunkKey.worldName(worldIndex));
+            }
+
+            List<Map.Entry<ChunkKey, UUID>> claims = new ArrayList<>();
+            for (Map.Entry<ChunkKey, String> entry : state.claims.entrySet()) {
+                try {
+                    claims.add(Map.entry(entry.getKey(), UUID.fromString(entry.getValue())));
+                } catch (IllegalArgumentException ignored) {
+                    // Owner keys are always player UUIDs
+                }
+            }
+            out.writeInt(claims.size());
+            for (Map.Entry<ChunkKey, UUID> entry : claims) {
+                out.writeInt(worldTable.get(entry.getKey().getWorldIndex()));
+                out.writeLong(entry.getKey().getPacked());
+                out.writeLong(entry.getValue().getMostSignificantBits());
+                out.writeLong(entry.getValue().getLeastSignificantBits());
+            }
+
+            out.writeInt(state.positions.size());
+            for (Map.Entry<ChunkKey, int[]> entry : state.positions.entrySet()) {
+                out.writeInt(worldTable.get(entry.getKey().getWorldIndex()));
+                out.writeLong(entry.getKey().getPacked());
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(entry.getValue()[1]);
+                out.writeInt(entry.getValue()[2]);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write claims.snapshot: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(snapshotTemp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(snapshotTemp, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to replace claims.snapshot: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * One-time import of the chunks.yml and positions.yml layout.
+     */
+    private State migrateFromYaml() {
+        Map<ChunkKey, String> claims = new HashMap<>();
+        Map<ChunkKey, int[]> positions = new HashMap<>();
+
+        YamlConfig chunkConfig = plugin.config.chunks;
+        String[] allPlayers = chunkConfig.getKeys("");
+        if (allPlayers != null) {
+            for (String playerKey : allPlayers) {
+                List<String> chunks = chunkConfig.getStringList(playerKey);
+                if (chunks == null) continue;
+                for (String rawKey : chunks) {
+                    ChunkKey chunkKey = ChunkKey.fromString(rawKey);
+                    if (chunkKey == null) continue;
+                    String existingOwner = claims.putIfAbsent(chunkKey, playerKey);
+                    if (existingOwner != null && !existingOwner.equals(playerKey)) {
+                        plugin.getLogger().warning("Chunk " + chunkKey + " is claimed by both " + existingOwner + " and " + playerKey + " in chunks.yml, keeping the claim of " + existingOwner + ".");
+                    }
+                }
+            }
+        }
+
+        YamlConfig positionConfig = plugin.config.positions;
+        String[] positionKeys = positionConfig.getKeys("");
+        if (positionKeys != null) {
+            for (String rawKey : positionKeys) {
+                ChunkKey chunkKey = ChunkKey.fromString(rawKey);
+                Object raw = positionConfig.get(rawKey);
+                if (chunkKey == null || raw == null) continue;
+                String[] parts = raw.toString().split(":");
+                if (parts.length < 3) continue;
+                try {
+                    positions.put(chunkKey, new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+                } catch (NumberFormatException ignored) {
+                    // Skip malformed positions, the scanner can find them again
+                }
+            }
+        }
+
+        plugin.getLogger().info("Migrated " + claims.size() + " claims from chunks.yml to the claim journal.");
+        return new State(claims, positions);
+    }
+}
@@ -0,0 +1,255 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttleutils.types.YamlConfig;
+
+import java.util.*;
+
+/**
+ * In-memory registry of all chunk loader claims, loaded once from chunks.yml.
+ * - Keeps owner -> claimed centers and center -> owner indexes, so all lookups are O(1).
+ * - Keeps a ClaimSpatialIndex for coverage and proximity queries around a chunk.
+ * - chunks.yml is only used as persistence: every mutation writes the affected owner's list back,
+ *   or marks the file dirty for a coalesced background write when storage.write_behind is enabled.
+ * - With storage.engine: journal, claims are loaded from and appended to the ClaimJournal instead.
+ * - Registered Listeners are told about every changed claim, so caches can invalidate selectively.
+ *
+ * Assumes chunkConfig is structured as: {playerUUID: [chunkKey1, chunkKey2, ...]}, representing claimed chunks.
+ * All methods must be called on the main thread.
+ */
+public class ClaimRegistry {
+    /**
+     * Notified on the main thread whenever claims change.
+     */
+    public interface Listener {
+        void onClaimChanged(ChunkKey chunkKey);
+
+        default void onClaimsReloaded() { }
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final YamlConfig chunkConfig;
+    private final PerformanceMetrics metrics;
+    private final Map<String, Set<ChunkKey>> claimsByOwner = new HashMap<>();
+    private final Map<ChunkKey, String> ownerByChunk = new HashMap<>();
+    private final ClaimSpatialIndex spatialIndex = new ClaimSpatialIndex(1);
+    private final ClaimJournal journal; // null when using the yaml engine
+    private final WriteBehindYamlFile writeBehind; // null when write-behind is disabled
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public ClaimRegistry(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.chunkConfig = plugin.config.chunks;
+        this.metrics = plugin.metrics;
+        this.journal = plugin.claimJournal;
+        this.writeBehind = journal == null && plugin.config.getBoolean("storage.write_behind")
+                ? new WriteBehindYamlFile(plugin, "chunks.yml", this::snapshot, plugin.config.getInt("storage.flush_delay_ticks"))
+                : null;
+        load();
+    }
+
+    /**
+     * (Re)loads all claims from chunks.yml, or from the journal.
+     */
+    public void load() {
+        claimsByOwner.clear();
+        ownerByChunk.clear();
+        spatialIndex.clear();
+        if (journal != null) {
+            for (Map.Entry<ChunkKey, String> claim : journal.getLoadedClaims().entrySet()) {
+                claimsByOwner.computeIfAbsent(claim.getValue(), k -> new LinkedHashSet<>()).add(claim.getKey());
+                ownerByChunk.put(claim.getKey(), claim.getValue());
+                spatialIndex.add(claim.getKey(), claim.getValue());
+            }
+            notifyReloaded();
+            return;
+        }
+        String[] allPlayers = chunkConfig.getKeys("");
+        if (allPlayers == null) return;
+        for (String playerKey : allPlayers) {
+            List<String> chunks = chunkConfig.getStringList(playerKey);
+            if (chunks == null) continue;
+            for (String rawKey : chunks) {
+                ChunkKey chunkKey = ChunkKey.fromString(rawKey);
+                if (chunkKey == null) continue;
+                String existingOwner = ownerByChunk.get(chunkKey);
+                if (existingOwner != null) {
+                    // Only one owner per center; the next write drops this entry from chunks.yml
+                    if (!existingOwner.equals(playerKey)) {
+                        plugin.getLogger().warning("Chunk " + chunkKey + " is claimed by both " + existingOwner + " and " + playerKey + " in chunks.yml, keeping the claim of " + existingOwner + ".");
+                    }
+                    continue;
+                }
+                claimsByOwner.computeIfAbsent(playerKey, k -> new LinkedHashSet<>()).add(chunkKey);
+                ownerByChunk.put(chunkKey, playerKey);
+                spatialIndex.add(chunkKey, playerKey);
+            }
+        }
+        notifyReloaded();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the claimed centers of an owner (unmodifiable, may be empty).
+     */
+    public Set<ChunkKey> getClaims(String ownerKey) {
+        Set<ChunkKey> claims = claimsByOwner.get(ownerKey);
+        return claims != null ? Collections.unmodifiableSet(claims) : Collections.emptySet();
+    }
+
+    public int getClaimCount(String ownerKey) {
+        Set<ChunkKey> claims = claimsByOwner.get(ownerKey);
+        return claims != null ? claims.size() : 0;
+    }
+
+    public boolean hasClaims(String ownerKey) {
+        return getClaimCount(ownerKey) > 0;
+    }
+
+    /**
+     * Returns the owner key (player UUID string) of the claim centered at chunkKey, or null if unclaimed.
+     */
+    public String getOwner(ChunkKey chunkKey) {
+        return ownerByChunk.get(chunkKey);
+    }
+
+    public boolean isClaimed(ChunkKey chunkKey) {
+        return ownerByChunk.containsKey(chunkKey);
+    }
+
+    /**
+     * Returns all owners that have at least one claim.
+     */
+    public Set<String> getOwners() {
+        return Collections.unmodifiableSet(claimsByOwner.keySet());
+    }
+
+    /**
+     * Returns all claimed centers with their owner (unmodifiable).
+     */
+    public Map<ChunkKey, String> getAllClaims() {
+        return Collections.unmodifiableMap(ownerByChunk);
+    }
+
+    /**
+     * Returns the spatial index of all claimed centers, for coverage and proximity queries.
+     */
+    public ClaimSpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public int getTotalClaimCount() {
+        return ownerByChunk.size();
+    }
+
+    /**
+     * Claims chunkKey for ownerKey. Returns false if the chunk is already claimed by anyone.
+     */
+    public boolean addClaim(String ownerKey, ChunkKey chunkKey) {
+        if (ownerByChunk.containsKey(chunkKey)) return false;
+        claimsByOwner.computeIfAbsent(ownerKey, k -> new LinkedHashSet<>()).add(chunkKey);
+        ownerByChunk.put(chunkKey, ownerKey);
+        spatialIndex.add(chunkKey, ownerKey);
+        if (journal != null) journal.appendClaim(ownerKey, chunkKey);
+        else save(ownerKey);
+        notifyChanged(chunkKey);
+        return true;
+    }
+
+    /**
+     * Removes the claim centered at chunkKey. Returns the previous owner key, or null if it wasn't claimed.
+     */
+    public String removeClaim(ChunkKey chunkKey) {
+        String ownerKey = ownerByChunk.remove(chunkKey);
+        if (ownerKey == null) return null;
+        spatialIndex.remove(chunkKey);
+        Set<ChunkKey> claims = claimsByOwner.get(ownerKey);
+        if (claims != null) {
+            claims.remove(chunkKey);
+            if (claims.isEmpty()) claimsByOwner.remove(ownerKey);
+        }
+        if (journal != null) journal.appendUnclaim(chunkKey);
+        else save(ownerKey);
+        notifyChanged(chunkKey);
+        return ownerKey;
+    }
+
+    /**
+     * Removes all claims of an owner. Returns the removed centers.
+     */
+    public List<ChunkKey> clearClaims(String ownerKey) {
+        Set<ChunkKey> claims = claimsByOwner.remove(ownerKey);
+        if (claims == null) return List.of();
+        for (ChunkKey chunkKey : claims) {
+            ownerByChunk.remove(chunkKey);
+            spatialIndex.remove(chunkKey);
+            if (journal != null) journal.appendUnclaim(chunkKey);
+        }
+        if (journal == null) save(ownerKey);
+        for (ChunkKey chunkKey : claims) {
+            notifyChanged(chunkKey);
+        }
+        return new ArrayList<>(claims);
+    }
+
+    /**
+     * Writes all pending changes to disk right away. Call before reloading chunks.yml.
+     */
+    public void flush() {
+        if (writeBehind != null) writeBehind.flushNow();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer.
+     */
+    public void shutdown() {
+        if (writeBehind != null) writeBehind.shutdown();
+    }
+
+    private void notifyChanged(ChunkKey chunkKey) {
+        for (Listener listener : listeners) {
+            listener.onClaimChanged(chunkKey);
+        }
+    }
+
+    private void notifyReloaded() {
+        for (Listener listener : listeners) {
+            listener.onClaimsReloaded();
+        }
+    }
+
+    /**
+     * Writes the claims of one owner back to chunks.yml.
+     */
+    private void save(String ownerKey) {
+        if (writeBehind != null) {
+            writeBehind.markDirty();
+            return;
+        }
+        chunkConfig.set(ownerKey, toStringList(getClaims(ownerKey)));
+        metrics.increment("storage.file_writes");
+    }
+
+    /**
+     * Returns a detached copy of all claims in the chunks.yml layout.
+     */
+    private Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<ChunkKey>> entry : claimsByOwner.entrySet()) {
+            snapshot.put(entry.getKey(), toStringList(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    private List<String> toStringList(Set<ChunkKey> claims) {
+        List<String> chunks = new ArrayList<>(claims.size());
+        for (ChunkKey chunkKey : claims) {
+            chunks.add(chunkKey.toString());
+        }
+        return chunks;
+    }
+}
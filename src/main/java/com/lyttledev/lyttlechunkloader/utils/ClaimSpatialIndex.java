@@ -0,0 +1,101 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * Per-world spatial index of claimed loader centers.
+ * - Centers are stored per world in a primitive map keyed by the packed chunk key.
+ * - Coverage and proximity queries only probe the chunks around the queried position,
+ *   so their cost depends on the radius, never on the number of claims on the server.
+ *
+ * Maintained by ClaimRegistry. All methods must be called on the main thread.
+ */
+public class ClaimSpatialIndex {
+    private final int areaRadius;
+    // World index -> packed center key -> owner key
+    private final Int2ObjectMap<Long2ObjectOpenHashMap<String>> centersByWorld = new Int2ObjectOpenHashMap<>();
+
+    public ClaimSpatialIndex(int areaRadius) {
+        this.areaRadius = areaRadius;
+    }
+
+    public void add(ChunkKey center, String ownerKey) {
+        centersByWorld.computeIfAbsent(center.getWorldIndex(), i -> new Long2ObjectOpenHashMap<>()).put(center.getPacked(), ownerKey);
+    }
+
+    public void remove(ChunkKey center) {
+        Long2ObjectOpenHashMap<String> centers = centersByWorld.get(center.getWorldIndex());
+        if (centers == null) return;
+        centers.remove(center.getPacked());
+        if (centers.isEmpty()) centersByWorld.remove(center.getWorldIndex());
+    }
+
+    public void clear() {
+        centersByWorld.clear();
+    }
+
+    /**
+     * Returns all claimed centers (packed key -> owner) of one world, as a read-only view.
+     */
+    public Long2ObjectMap<String> getCenters(int worldIndex) {
+        Long2ObjectOpenHashMap<String> centers = centersByWorld.get(worldIndex);
+        return centers != null ? Long2ObjectMaps.unmodifiable(centers) : Long2ObjectMaps.emptyMap();
+    }
+
+    /**
+     * Returns the owner of the center at (cx,cz), or null if it isn't a claimed center.
+     */
+    public String getOwner(int worldIndex, int cx, int cz) {
+        Long2ObjectOpenHashMap<String> centers = centersByWorld.get(worldIndex);
+        return centers != null ? centers.get(ChunkKey.pack(cx, cz)) : null;
+    }
+
+    /**
+     * Returns the packed keys of all claimed centers whose area covers chunk (cx,cz).
+     */
+    public LongList getCentersCovering(int worldIndex, int cx, int cz) {
+        return new LongArrayList(getCentersWithin(worldIndex, cx, cz, areaRadius).keySet());
+    }
+
+    /**
+     * Returns all claimed centers (packed key -> owner) within a square radius around (cx,cz).
+     */
+    public Long2ObjectMap<String> getCentersWithin(int worldIndex, int cx, int cz, int radius) {
+        Long2ObjectMap<String> found = new Long2ObjectOpenHashMap<>();
+        Long2ObjectOpenHashMap<String> centers = centersByWorld.get(worldIndex);
+        if (centers == null || centers.isEmpty()) return found;
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                long key = ChunkKey.pack(cx + dx, cz + dz);
+                String owner = centers.get(key);
+                if (owner != null) found.put(key, owner);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if any claimed center owned by ownerKey covers chunk (cx,cz).
+     */
+    public boolean isCoveredBy(int worldIndex, int cx, int cz, String ownerKey) {
+        Long2ObjectOpenHashMap<String> centers = centersByWorld.get(worldIndex);
+        if (centers == null) return false;
+        for (int dz = -areaRadius; dz <= areaRadius; dz++) {
+            for (int dx = -areaRadius; dx <= areaRadius; dx++) {
+                if (ownerKey.equals(centers.get(ChunkKey.pack(cx + dx, cz + dz)))) return true;
+            }
+        }
+        return false;
+    }
+
+    public int getAreaRadius() {
+        return areaRadius;
+    }
+}
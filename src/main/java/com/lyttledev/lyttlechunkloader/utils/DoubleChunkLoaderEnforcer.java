@@ -2,7 +2,9 @@ package com.lyttledev.lyttlechunkloader.utils;
 
 import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
 
-import com.lyttledev.lyttleutils.types.YamlConfig;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.*;
@@ -17,20 +19,25 @@ import java.util.*;
  * configurable radius. Removes all conflicting DOUBLE loaders in the area except the one just placed.
  * No item duplication: ensures items are only dropped for physically broken loaders, not those just removed logically.
  *
- * Assumes chunkConfig is structured as: {playerUUID: [chunkKey1, chunkKey2, ...]}, representing claimed chunks.
- * Assumes ChunkRangeUtil provides: getAreaChunkKeys(World, int, int) for chunk key set within radius.
+ * Assumes ClaimRegistry holds all claimed chunks with their owner.
+ * Assumes ClaimSpatialIndex provides: getCentersCovering(int, int, int) for the claimed centers around a chunk,
+ * so only chunks that actually hold a claim are checked.
+ * Assumes LoaderPositionIndex knows the lodestone position of every claimed loader.
+ * Removed claims are released through the PaymentHandler, so their tickets and billing end with them.
  */
 public class DoubleChunkLoaderEnforcer {
 
     private final LyttleChunkLoader plugin;
-    private final YamlConfig chunkConfig;
+    private final ClaimRegistry claimRegistry;
     private final ChunkRangeUtil chunkRangeUtil;
+    private final LoaderPositionIndex loaderPositions;
     private final int enforceRadius; // Number of chunks radius to enforce uniqueness
 
     public DoubleChunkLoaderEnforcer(LyttleChunkLoader plugin, ChunkRangeUtil chunkRangeUtil, int enforceRadius) {
         this.plugin = plugin;
-        this.chunkConfig = plugin.config.chunks;
+        this.claimRegistry = plugin.claimRegistry;
         this.chunkRangeUtil = chunkRangeUtil;
+        this.loaderPositions = plugin.loaderPositions;
         this.enforceRadius = enforceRadius;
     }
 
@@ -41,12 +48,15 @@ public class DoubleChunkLoaderEnforcer {
      * @param placer The Player placing the loader (may be null for system action)
      */
     public void enforceUniqueDoubleChunkLoaderOnCreate(Location placedLodestoneLoc, Player placer) {
+        long start = System.nanoTime();
         World world = placedLodestoneLoc.getWorld();
-        Chunk centerChunk = placedLodestoneLoc.getChunk();
-        Set<String> areaChunkKeys = chunkRangeUtil.getAreaChunkKeys(world, centerChunk.getX(), centerChunk.getZ());
+        ChunkKey centerKey = ChunkKey.of(placedLodestoneLoc);
+        int worldIndex = centerKey.getWorldIndex();
+        LongCollection areaChunks = claimRegistry.getSpatialIndex().getCentersCovering(worldIndex, centerKey.getX(), centerKey.getZ());
 
         // Collect all DOUBLE loaders in area
-        List<Location> doubleLoaderBases = findPhysicalDoubleLoadersInChunks(world, areaChunkKeys);
+        List<Location> doubleLoaderBases = findPhysicalDoubleLoadersInChunks(worldIndex, areaChunks);
+        scanLegacyClaimsInArea(world, worldIndex, areaChunks, placedLodestoneLoc);
 
         // Remove all except the newly placed one
         for (Location baseLoc : doubleLoaderBases) {
@@ -56,8 +66,9 @@ public class DoubleChunkLoaderEnforcer {
         }
 
         // Ensure config only keeps the new loader in area
-        cleanUpConfigForArea(world, areaChunkKeys, placedLodestoneLoc);
+        cleanUpConfigForArea(worldIndex, areaChunks, centerKey);
         // Always leave the newly placed loader intact and claimed
+        plugin.metrics.recordSince("enforcer.create", start);
     }
 
     /**
@@ -68,12 +79,11 @@ public class DoubleChunkLoaderEnforcer {
      * @param remover Player or system removing the loader
      */
     public void enforceUniqueDoubleChunkLoaderOnRemove(Location lodestoneLoc, Player remover) {
-        World world = lodestoneLoc.getWorld();
-        Chunk chunk = lodestoneLoc.getChunk();
-        String chunkKey = chunkRangeUtil.getChunkKey(world, chunk.getX(), chunk.getZ());
+        long start = System.nanoTime();
+        ChunkKey chunkKey = ChunkKey.of(lodestoneLoc);
 
         // Find player owner from config
-        String ownerKey = getLoaderOwnerForChunk(chunkKey);
+        String ownerKey = claimRegistry.getOwner(chunkKey);
 
         if (ownerKey != null) {
             // Only remove if it's in config (valid)
@@ -86,13 +96,13 @@ public class DoubleChunkLoaderEnforcer {
             if (remover != null && ownerKey.equals(getPlayerKey(remover))) {
                 remover.sendMessage(
                     Component.text("Chunk unloaded: ", NamedTextColor.GRAY)
-                        .append(Component.text(chunkKey, NamedTextColor.WHITE)));
+                        .append(Component.text(chunkKey.toString(), NamedTextColor.WHITE)));
                 remover.playSound(lodestoneLoc, Sound.BLOCK_ANVIL_LAND, SoundCategory.MASTER, 1.0f, 1.0f);
             }
 
             // Clean up: ensure no stray double loaders remain in area
-            Set<String> areaChunkKeys = chunkRangeUtil.getAreaChunkKeys(world, chunk.getX(), chunk.getZ());
-            List<Location> stray = findPhysicalDoubleLoadersInChunks(world, areaChunkKeys);
+            LongCollection areaChunks = claimRegistry.getSpatialIndex().getCentersCovering(chunkKey.getWorldIndex(), chunkKey.getX(), chunkKey.getZ());
+            List<Location> stray = findPhysicalDoubleLoadersInChunks(chunkKey.getWorldIndex(), areaChunks);
             for (Location strayBase : stray) {
                 if (!strayBase.equals(lodestoneLoc)) {
                     breakDoubleChunkLoader(strayBase, false); // Don't drop items for logical cleanup
@@ -100,35 +110,64 @@ public class DoubleChunkLoaderEnforcer {
                 }
             }
         }
+        plugin.metrics.recordSince("enforcer.remove", start);
     }
 
     /**
      * Finds all physical DOUBLE chunk loader bases (Lodestone with Lightning Rod above) in area.
+     * Only the recorded lodestone position of each claimed chunk is checked, no block scanning.
      */
-    private List<Location> findPhysicalDoubleLoadersInChunks(World world, Set<String> chunkKeys) {
+    private List<Location> findPhysicalDoubleLoadersInChunks(int worldIndex, LongCollection areaChunks) {
         List<Location> bases = new ArrayList<>();
-        for (String key : chunkKeys) {
-            String[] parts = key.split(":");
-            if (parts.length < 3) continue;
-            int cx = Integer.parseInt(parts[1]);
-            int cz = Integer.parseInt(parts[2]);
-            Chunk chunk = world.getChunkAt(cx, cz);
-
-            // Search all blocks in chunk for Lodestone+Lightning Rod stacks (Y 0-255)
-            for (int y = world.getMinHeight(); y < world.getMaxHeight() - 1; y++) {
-                for (int lx = 0; lx < 16; lx++) {
-                    for (int lz = 0; lz < 16; lz++) {
-                        Location base = new Location(world, chunk.getBlock(lx, y, lz).getX(), y, chunk.getBlock(lx, y, lz).getZ());
-                        if (isPhysicalDoubleLoader(base)) {
-                            bases.add(base);
-                        }
-                    }
-                }
+        LongIterator it = areaChunks.iterator();
+        while (it.hasNext()) {
+            Location base = loaderPositions.get(ChunkKey.of(worldIndex, it.nextLong()));
+            if (base != null && isPhysicalDoubleLoader(base)) {
+                bases.add(base);
             }
         }
         return bases;
     }
 
+    /**
+     * Claims created before lodestone positions were recorded can't be checked directly.
+     * Those chunks are searched off the main thread, and found loaders (except keepLoc) are broken once confirmed.
+     */
+    private void scanLegacyClaimsInArea(World world, int worldIndex, LongCollection areaChunks, Location keepLoc) {
+        List<ChunkKey> legacyKeys = new ArrayList<>();
+        LongIterator it = areaChunks.iterator();
+        while (it.hasNext()) {
+            ChunkKey key = ChunkKey.of(worldIndex, it.nextLong());
+            if (!loaderPositions.contains(key) && claimRegistry.isClaimed(key)) {
+                legacyKeys.add(key);
+            }
+        }
+        if (legacyKeys.isEmpty()) return;
+
+        scanLegacyClaims(world, legacyKeys, keepLoc, true);
+    }
+
+    /**
+     * Breaks the legacy loaders found in chunkKeys. Chunks that unloaded before their loaders could be confirmed
+     * are scanned once more if retry is set, and skipped otherwise: touching their blocks would load them on the main thread.
+     */
+    private void scanLegacyClaims(World world, List<ChunkKey> chunkKeys, Location keepLoc, boolean retry) {
+        ChunkKey keepKey = ChunkKey.of(keepLoc);
+        plugin.snapshotScanner.scan(world, chunkKeys, found -> {
+            for (Map.Entry<ChunkKey, List<Location>> entry : found.confirmed.entrySet()) {
+                for (Location base : entry.getValue()) {
+                    if (base.equals(keepLoc) || !isPhysicalDoubleLoader(base)) continue;
+                    breakDoubleChunkLoader(base, true);
+                    // The kept loader may share its center chunk with a legacy one, its claim must stay
+                    if (!entry.getKey().equals(keepKey)) removeClaimForLoader(base);
+                }
+            }
+            if (retry && !found.unverified.isEmpty()) {
+                scanLegacyClaims(world, new ArrayList<>(found.unverified.keySet()), keepLoc, false);
+            }
+        });
+    }
+
     /**
      * Returns true if the given Location is a Lodestone with Lightning Rod directly above.
      */
@@ -156,57 +195,40 @@ public class DoubleChunkLoaderEnforcer {
     }
 
     /**
-     * Removes the claim for this loader in the config.
+     * Removes the claim for this loader.
      */
     private void removeClaimForLoader(Location lodestoneLoc) {
-        String chunkKey = chunkRangeUtil.getChunkKey(lodestoneLoc);
-        String[] allPlayers = chunkConfig.getKeys("");
-        if (allPlayers == null) return;
-        for (String playerKey : allPlayers) {
-            List<String> chunks = chunkConfig.getStringList(playerKey);
-            if (chunks != null && chunks.remove(chunkKey)) {
-                chunkConfig.set(playerKey, chunks);
-            }
-        }
+        releaseClaim(ChunkKey.of(lodestoneLoc));
     }
 
     /**
-     * Returns the player UUID string who owns this chunk loader, or null if none.
+     * Removes claims for all double loaders except the one at keepKey in area.
      */
-    private String getLoaderOwnerForChunk(String chunkKey) {
-        String[] allPlayers = chunkConfig.getKeys("");
-        if (allPlayers == null) return null;
-        for (String playerKey : allPlayers) {
-            List<String> chunks = chunkConfig.getStringList(playerKey);
-            if (chunks != null && chunks.contains(chunkKey)) {
-                return playerKey;
-            }
+    private void cleanUpConfigForArea(int worldIndex, LongCollection areaChunks, ChunkKey keepKey) {
+        LongIterator it = areaChunks.iterator();
+        while (it.hasNext()) {
+            ChunkKey ckey = ChunkKey.of(worldIndex, it.nextLong());
+            if (ckey.equals(keepKey)) continue;
+            releaseClaim(ckey);
         }
-        return null;
     }
 
     /**
-     * Removes claims from config for all double loaders except the one at keepLoc in area.
+     * Removes the claim centered at chunkKey, if any, and releases everything that belongs to it:
+     * the recorded position, the chunk marker, the tickets and, for the owner's last claim, the billing.
      */
-    private void cleanUpConfigForArea(World world, Set<String> areaChunkKeys, Location keepLoc) {
-        String keepKey = chunkRangeUtil.getChunkKey(keepLoc);
-        String[] allPlayers = chunkConfig.getKeys("");
-        if (allPlayers == null) return;
-        for (String playerKey : allPlayers) {
-            List<String> chunks = chunkConfig.getStringList(playerKey);
-            if (chunks == null) continue;
-            boolean changed = false;
-            Iterator<String> it = chunks.iterator();
-            while (it.hasNext()) {
-                String ckey = it.next();
-                if (areaChunkKeys.contains(ckey) && !ckey.equals(keepKey)) {
-                    it.remove();
-                    changed = true;
-                }
-            }
-            if (changed) {
-                chunkConfig.set(playerKey, chunks);
-            }
+    private void releaseClaim(ChunkKey chunkKey) {
+        String ownerKey = claimRegistry.removeClaim(chunkKey);
+        if (ownerKey == null) return;
+        loaderPositions.remove(chunkKey);
+        World world = chunkKey.getWorld();
+        if (world != null && world.isChunkLoaded(chunkKey.getX(), chunkKey.getZ())) {
+            plugin.chunkMarkers.unmark(world.getChunkAt(chunkKey.getX(), chunkKey.getZ()));
+        }
+        try {
+            plugin.paymentHandler.onChunkLoaderRemoved(UUID.fromString(ownerKey), chunkKey);
+        } catch (IllegalArgumentException e) {
+            plugin.paymentHandler.unloadChunkAndSurrounding(chunkKey);
         }
     }
 
@@ -216,4 +238,4 @@ public class DoubleChunkLoaderEnforcer {
     private String getPlayerKey(Player player) {
         return player != null ? player.getUniqueId().toString() : "";
     }
-}
\ No newline at end of file
+}
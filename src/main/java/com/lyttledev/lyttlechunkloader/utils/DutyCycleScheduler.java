@@ -0,0 +1,139 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Duty-cycle mode: every loader runs for duty_cycle.active_seconds out of every duty_cycle.period_seconds.
+ * - Each loader's phase is derived from a hash of its chunk key, so the loaders are spread evenly over the period
+ *   and only about active/period of all loader areas are ticking at any moment.
+ * - Loaders are grouped by phase, so each second only the loaders starting or ending their active window are touched.
+ * - Loaders (re)activated mid-period are put in their window right away, through the ChunkTicketManager listener.
+ *   Once per period, all loaders are reconciled, which catches anything that drifted.
+ * - Resting loaders are suspended in the ChunkTicketManager; they stay active and keep being billed as usual.
+ *
+ * All methods must be called on the main thread.
+ */
+public class DutyCycleScheduler implements ClaimRegistry.Listener, ChunkTicketManager.Listener {
+    private final ChunkTicketManager ticketManager;
+    private final ClaimRegistry claimRegistry;
+    private final PerformanceMetrics metrics;
+    private final int activeSeconds;
+    private final int periodSeconds;
+    // Phase (0 .. period - 1) -> claimed loader centers with that phase
+    private final Int2ObjectMap<Set<ChunkKey>> loadersByPhase = new Int2ObjectOpenHashMap<>();
+    // Loaders suspended by this scheduler
+    private final Set<ChunkKey> resting = new HashSet<>();
+    private int second;
+    private BukkitTask task;
+
+    public DutyCycleScheduler(LyttleChunkLoader plugin) {
+        this.ticketManager = plugin.ticketManager;
+        this.claimRegistry = plugin.claimRegistry;
+        this.metrics = plugin.metrics;
+        this.periodSeconds = Math.max(2, plugin.config.getInt("duty_cycle.period_seconds"));
+        this.activeSeconds = Math.max(1, Math.min(periodSeconds - 1, plugin.config.getInt("duty_cycle.active_seconds")));
+        // The first tick starts a period, so all restored loaders are reconciled right away
+        this.second = periodSeconds - 1;
+        onClaimsReloaded();
+        claimRegistry.addListener(this);
+        ticketManager.addListener(this);
+        this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 20L, 20L);
+    }
+
+    /**
+     * Stops cycling and resumes every resting loader.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (ChunkKey centerKey : new ArrayList<>(resting)) wake(centerKey);
+    }
+
+    /**
+     * Returns true if the loader is inside its active window right now.
+     */
+    public boolean isInActiveWindow(ChunkKey centerKey) {
+        return Math.floorMod(second + phaseOf(centerKey), periodSeconds) < activeSeconds;
+    }
+
+    public int getRestingCount() {
+        return resting.size();
+    }
+
+    @Override
+    public void onClaimChanged(ChunkKey chunkKey) {
+        int phase = phaseOf(chunkKey);
+        if (claimRegistry.isClaimed(chunkKey)) {
+            loadersByPhase.computeIfAbsent(phase, p -> new HashSet<>()).add(chunkKey);
+            return;
+        }
+        Set<ChunkKey> loaders = loadersByPhase.get(phase);
+        if (loaders != null && loaders.remove(chunkKey) && loaders.isEmpty()) loadersByPhase.remove(phase);
+        resting.remove(chunkKey);
+    }
+
+    @Override
+    public void onLoaderActivated(ChunkKey centerKey) {
+        if (task != null && !isInActiveWindow(centerKey)) rest(centerKey);
+    }
+
+    @Override
+    public void onClaimsReloaded() {
+        loadersByPhase.clear();
+        for (ChunkKey chunkKey : claimRegistry.getAllClaims().keySet()) {
+            loadersByPhase.computeIfAbsent(phaseOf(chunkKey), p -> new HashSet<>()).add(chunkKey);
+        }
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        second = (second + 1) % periodSeconds;
+        if (second == 0) {
+            reconcile();
+        } else {
+            // Loaders with (second + phase) % period == 0 start their window, == active end it
+            Set<ChunkKey> starting = loadersByPhase.get(Math.floorMod(-second, periodSeconds));
+            if (starting != null) for (ChunkKey centerKey : starting) wake(centerKey);
+            Set<ChunkKey> ending = loadersByPhase.get(Math.floorMod(activeSeconds - second, periodSeconds));
+            if (ending != null) for (ChunkKey centerKey : ending) rest(centerKey);
+        }
+        metrics.recordSince("duty_cycle.tick", start);
+    }
+
+    /**
+     * Brings every loader in line with its window.
+     */
+    private void reconcile() {
+        resting.removeIf(centerKey -> !ticketManager.isSuspended(centerKey, ChunkTicketManager.SuspendReason.DUTY_CYCLE));
+        for (Set<ChunkKey> loaders : loadersByPhase.values()) {
+            for (ChunkKey centerKey : loaders) {
+                if (isInActiveWindow(centerKey)) wake(centerKey);
+                else rest(centerKey);
+            }
+        }
+    }
+
+    private void rest(ChunkKey centerKey) {
+        if (ticketManager.suspend(centerKey, ChunkTicketManager.SuspendReason.DUTY_CYCLE)) resting.add(centerKey);
+    }
+
+    private void wake(ChunkKey centerKey) {
+        if (resting.remove(centerKey)) ticketManager.resume(centerKey, ChunkTicketManager.SuspendReason.DUTY_CYCLE);
+    }
+
+    private int phaseOf(ChunkKey centerKey) {
+        // World name rather than index, so a loader keeps its phase across restarts
+        long hash = HashCommon.murmurHash3(centerKey.getPacked() + 31L * centerKey.getWorldName().hashCode());
+        return (int) Math.floorMod(hash, (long) periodSeconds);
+    }
+}
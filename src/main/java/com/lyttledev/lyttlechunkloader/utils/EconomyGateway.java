@@ -0,0 +1,140 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.IllegalPluginAccessException;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs all Vault economy calls off the main thread.
+ * - Calls run in order on one dedicated thread, so economy plugins never see concurrent calls from us.
+ * - OfflinePlayer handles are looked up per call and never cached: for online players they are the live Player,
+ *   which must not be kept alive after they quit.
+ * - has + withdraw is one operation, so a charge costs one round trip to the economy thread.
+ * - Results are always delivered on the main thread; they are dropped once the plugin is disabled.
+ */
+public class EconomyGateway {
+    public enum Result {
+        PAID,
+        INSUFFICIENT_FUNDS,
+        FAILED
+    }
+
+    /**
+     * Outcome of a settlement, with the amount actually withdrawn and the balance left afterwards (NaN if unknown).
+     */
+    public static final class Settlement {
+        public final Result result;
+        public final double paid;
+        public final double balance;
+
+        private Settlement(Result result, double paid, double balance) {
+            this.result = result;
+            this.paid = paid;
+            this.balance = balance;
+        }
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final Economy economy;
+    private final ExecutorService executor;
+
+    public EconomyGateway(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.economy = plugin.economyImplementer;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LyttleChunkLoader-Economy");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether the player can pay amount, then withdraws it.
+     * Result: PAID, INSUFFICIENT_FUNDS, or FAILED when the economy refused or threw.
+     */
+    public void withdraw(UUID playerUUID, double amount, Consumer<Result> onResult) {
+        if (amount <= 0.0) {
+            onResult.accept(Result.PAID);
+            return;
+        }
+        submit(() -> {
+            OfflinePlayer offlinePlayer = getOfflinePlayer(playerUUID);
+            if (!economy.has(offlinePlayer, amount)) return Result.INSUFFICIENT_FUNDS;
+            return economy.withdrawPlayer(offlinePlayer, amount).transactionSuccess() ? Result.PAID : Result.FAILED;
+        }, Result.FAILED, onResult);
+    }
+
+    /**
+     * Like withdraw, but also reports the balance left afterwards, so callers can tell how much more
+     * the player can cover without asking the economy again.
+     * If the player can't cover amount, nothing is withdrawn and the result is INSUFFICIENT_FUNDS.
+     */
+    public void settle(UUID playerUUID, double amount, Consumer<Settlement> onResult) {
+        submit(() -> {
+            OfflinePlayer offlinePlayer = getOfflinePlayer(playerUUID);
+            if (amount <= 0.0) return new Settlement(Result.PAID, 0.0, economy.getBalance(offlinePlayer));
+            if (economy.has(offlinePlayer, amount)) {
+                boolean paid = economy.withdrawPlayer(offlinePlayer, amount).transactionSuccess();
+                return new Settlement(paid ? Result.PAID : Result.FAILED, paid ? amount : 0.0, economy.getBalance(offlinePlayer));
+            }
+            return new Settlement(Result.INSUFFICIENT_FUNDS, 0.0, economy.getBalance(offlinePlayer));
+        }, new Settlement(Result.FAILED, 0.0, Double.NaN), onResult);
+    }
+
+    /**
+     * Checks whether the player can pay amount, without withdrawing anything.
+     * Result: PAID when the player has enough, INSUFFICIENT_FUNDS, or FAILED when the economy threw.
+     */
+    public void has(UUID playerUUID, double amount, Consumer<Result> onResult) {
+        submit(() -> economy.has(getOfflinePlayer(playerUUID), amount) ? Result.PAID : Result.INSUFFICIENT_FUNDS, Result.FAILED, onResult);
+    }
+
+    public OfflinePlayer getOfflinePlayer(UUID playerUUID) {
+        return Bukkit.getOfflinePlayer(playerUUID);
+    }
+
+    /**
+     * Lets queued economy calls finish (for up to 10 seconds) and stops the economy thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending economy transactions.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> void submit(Callable<T> call, T onError, Consumer<T> onResult) {
+        executor.execute(() -> {
+            T result;
+            long start = System.nanoTime();
+            try {
+                result = call.call();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Economy call failed: " + e.getMessage());
+                plugin.metrics.increment("economy.errors");
+                result = onError;
+            }
+            plugin.metrics.recordSince("economy.call", start);
+            T finalResult = result;
+            if (!plugin.isEnabled()) return;
+            try {
+                Bukkit.getScheduler().runTask(plugin, () -> onResult.accept(finalResult));
+            } catch (IllegalPluginAccessException e) {
+                // Disabled while the call was running, the result is no longer needed
+            }
+        });
+    }
+}
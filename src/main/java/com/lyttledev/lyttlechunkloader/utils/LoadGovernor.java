@@ -0,0 +1,233 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Sheds chunk loader load while the server can't keep up, based on the average tick time (MSPT).
+ * - Above governor.shrink_mspt, all loader areas are shrunk to their center chunk.
+ * - Above governor.shed_mspt, governor.shed_step loaders are suspended per check, always from the owner with the most
+ *   running loaders, so heavy users lose loaders before anyone else loses their only one.
+ * - At or below governor.recover_mspt, suspended loaders are resumed (oldest suspension first), then the areas grow back.
+ *   Between recover_mspt and shrink_mspt nothing changes, so the governor doesn't flap around one threshold.
+ * - Time spent suspended or shrunk is tracked per owner, so billing can credit it (drainSuspendedMillis,
+ *   drainShrunkMillis). Suspended time while the areas are shrunk only counts for the center chunk, the rest
+ *   of the area is already credited as shrunk time.
+ *
+ * All methods must be called on the main thread.
+ */
+public class LoadGovernor {
+    private static final class Suspension {
+        private final String ownerKey;
+        private long since;
+
+        private Suspension(String ownerKey, long since) {
+            this.ownerKey = ownerKey;
+            this.since = since;
+        }
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final ChunkTicketManager ticketManager;
+    private final ClaimRegistry claimRegistry;
+    private final double shrinkMspt;
+    private final double shedMspt;
+    private final double recoverMspt;
+    private final int checkIntervalTicks;
+    private final int shedStep;
+    // Suspended loaders, oldest first
+    private final Map<ChunkKey, Suspension> suspensions = new LinkedHashMap<>();
+    // Owner key -> their suspended loaders, so billing only looks at its own owner's suspensions
+    private final Map<String, Set<ChunkKey>> suspendedByOwner = new HashMap<>();
+    // Owner key -> loader -> milliseconds spent suspended that weren't billed yet, weighted by the share of the area lost
+    private final Map<String, Map<ChunkKey, Double>> suspendedMillis = new HashMap<>();
+    private final double shrinkLoss;
+    // Milliseconds the areas were shrunk since the governor started, without the current stretch
+    private long shrunkMillis = 0L;
+    // Start of the current shrunk stretch, -1 while the areas are at full size
+    private long shrunkSince = -1L;
+    // Owner key -> total shrunk milliseconds at their last drain
+    private final Map<String, Long> shrunkMillisDrained = new HashMap<>();
+    private BukkitTask task;
+    private double lastMspt = 0.0;
+
+    public LoadGovernor(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.ticketManager = plugin.ticketManager;
+        this.claimRegistry = plugin.claimRegistry;
+        this.shrinkMspt = plugin.config.getDouble("governor.shrink_mspt");
+        this.shedMspt = plugin.config.getDouble("governor.shed_mspt");
+        this.recoverMspt = plugin.config.getDouble("governor.recover_mspt");
+        this.checkIntervalTicks = Math.max(20, plugin.config.getInt("governor.check_interval_ticks"));
+        this.shedStep = Math.max(1, plugin.config.getInt("governor.shed_step"));
+        this.shrinkLoss = ticketManager.getShrinkLoss();
+    }
+
+    public void start() {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::check, checkIntervalTicks, checkIntervalTicks);
+    }
+
+    /**
+     * Stops the governor, resumes everything it suspended and drops the suspended and shrunk time that wasn't billed yet.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        while (!suspensions.isEmpty()) resumeOldest();
+        setShrunk(false);
+        suspendedMillis.clear();
+        shrunkMillisDrained.clear();
+    }
+
+    private void check() {
+        long start = System.nanoTime();
+        lastMspt = Bukkit.getServer().getAverageTickTime();
+        forgetEnded();
+        if (lastMspt >= shedMspt) {
+            setShrunk(true);
+            shed();
+        } else if (lastMspt >= shrinkMspt) {
+            setShrunk(true);
+        } else if (lastMspt <= recoverMspt) {
+            if (!suspensions.isEmpty()) {
+                for (int i = 0; i < shedStep && !suspensions.isEmpty(); i++) resumeOldest();
+            } else {
+                setShrunk(false);
+            }
+        }
+        plugin.metrics.recordSince("governor.check", start);
+    }
+
+    private void setShrunk(boolean shrunk) {
+        if (ticketManager.isShrunk() == shrunk) return;
+        long now = System.currentTimeMillis();
+        // Suspended time is weighted by the area size, so credit it up to now before the size changes
+        for (Map.Entry<ChunkKey, Suspension> entry : suspensions.entrySet()) credit(entry.getKey(), entry.getValue(), now);
+        if (shrunk) {
+            shrunkSince = now;
+        } else {
+            shrunkMillis += now - shrunkSince;
+            shrunkSince = -1L;
+        }
+        ticketManager.setShrunk(shrunk);
+    }
+
+    /**
+     * Suspends shedStep loaders, taking one at a time from the owner with the most running loaders.
+     */
+    private void shed() {
+        Map<String, List<ChunkKey>> runningByOwner = new HashMap<>();
+        for (ChunkKey centerKey : ticketManager.getRunningLoaders()) {
+            String ownerKey = claimRegistry.getOwner(centerKey);
+            if (ownerKey != null) runningByOwner.computeIfAbsent(ownerKey, k -> new ArrayList<>()).add(centerKey);
+        }
+        PriorityQueue<List<ChunkKey>> owners = new PriorityQueue<>((a, b) -> Integer.compare(b.size(), a.size()));
+        owners.addAll(runningByOwner.values());
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < shedStep && !owners.isEmpty(); i++) {
+            List<ChunkKey> loaders = owners.poll();
+            ChunkKey centerKey = loaders.remove(loaders.size() - 1);
+            if (ticketManager.suspend(centerKey, ChunkTicketManager.SuspendReason.GOVERNOR)) {
+                String ownerKey = claimRegistry.getOwner(centerKey);
+                suspensions.put(centerKey, new Suspension(ownerKey, now));
+                suspendedByOwner.computeIfAbsent(ownerKey, k -> new HashSet<>()).add(centerKey);
+                plugin.metrics.increment("governor.suspensions");
+            }
+            if (!loaders.isEmpty()) owners.add(loaders);
+        }
+    }
+
+    private void resumeOldest() {
+        Iterator<Map.Entry<ChunkKey, Suspension>> it = suspensions.entrySet().iterator();
+        Map.Entry<ChunkKey, Suspension> oldest = it.next();
+        it.remove();
+        forgetOwner(oldest.getValue().ownerKey, oldest.getKey());
+        credit(oldest.getKey(), oldest.getValue(), System.currentTimeMillis());
+        ticketManager.resume(oldest.getKey(), ChunkTicketManager.SuspendReason.GOVERNOR);
+    }
+
+    /**
+     * Drops suspensions of loaders that were deactivated (removed, owner left) in the meantime.
+     */
+    private void forgetEnded() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<ChunkKey, Suspension>> it = suspensions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ChunkKey, Suspension> entry = it.next();
+            if (ticketManager.isSuspended(entry.getKey(), ChunkTicketManager.SuspendReason.GOVERNOR)) continue;
+            credit(entry.getKey(), entry.getValue(), now);
+            it.remove();
+            forgetOwner(entry.getValue().ownerKey, entry.getKey());
+        }
+    }
+
+    private void forgetOwner(String ownerKey, ChunkKey centerKey) {
+        Set<ChunkKey> loaders = suspendedByOwner.get(ownerKey);
+        if (loaders != null && loaders.remove(centerKey) && loaders.isEmpty()) suspendedByOwner.remove(ownerKey);
+    }
+
+    private void credit(ChunkKey centerKey, Suspension suspension, long now) {
+        double weight = shrunkSince >= 0L ? 1.0 - shrinkLoss : 1.0;
+        double millis = Math.max(0L, now - suspension.since) * weight;
+        suspendedMillis.computeIfAbsent(suspension.ownerKey, k -> new HashMap<>()).merge(centerKey, millis, Double::sum);
+        suspension.since = now;
+    }
+
+    /**
+     * Returns the milliseconds each of the owner's loaders spent suspended since the last call, and resets them.
+     * While the areas were shrunk, only the center chunk's share of that time counts.
+     */
+    public Map<ChunkKey, Double> drainSuspendedMillis(String ownerKey) {
+        Set<ChunkKey> loaders = suspendedByOwner.get(ownerKey);
+        if (loaders != null) {
+            long now = System.currentTimeMillis();
+            for (ChunkKey centerKey : loaders) credit(centerKey, suspensions.get(centerKey), now);
+        }
+        Map<ChunkKey, Double> millis = suspendedMillis.remove(ownerKey);
+        return millis != null ? millis : Map.of();
+    }
+
+    /**
+     * Returns the milliseconds the loader areas were shrunk since the owner's last call. The first call for an
+     * owner only starts tracking and returns 0.
+     */
+    public long drainShrunkMillis(String ownerKey) {
+        long total = shrunkMillis + (shrunkSince >= 0L ? System.currentTimeMillis() - shrunkSince : 0L);
+        Long drained = shrunkMillisDrained.put(ownerKey, total);
+        return drained != null ? total - drained : 0L;
+    }
+
+    /**
+     * Drops the time not billed yet of an owner that is no longer billed.
+     */
+    public void forgetBilling(String ownerKey) {
+        suspendedMillis.remove(ownerKey);
+        shrunkMillisDrained.remove(ownerKey);
+    }
+
+    /**
+     * Returns the share of a loader's area that is released while the areas are shrunk.
+     */
+    public double getShrinkLoss() {
+        return shrinkLoss;
+    }
+
+    public int getSuspendedCount() {
+        return suspensions.size();
+    }
+
+    /**
+     * Average tick time (in milliseconds) seen at the last check.
+     */
+    public double getLastMspt() {
+        return lastMspt;
+    }
+}
@@ -0,0 +1,85 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * Marks the chunk of every chunk loader in its PersistentDataContainer, with the lodestone position and the owner.
+ * - The marker travels with the chunk, so when a claimed chunk loads, its loader can be checked with a single block
+ *   lookup instead of a scan (validate).
+ * - Markers of removed claims are only cleared while their chunk is loaded; stale markers in unclaimed chunks are
+ *   ignored and overwritten when the chunk is claimed again.
+ *
+ * All methods must be called on the main thread, with the chunk loaded.
+ */
+public class LoaderChunkMarker {
+    /**
+     * Result of validating a claimed chunk.
+     */
+    public enum Validation {
+        VALID,
+        ORPHANED,
+        UNKNOWN
+    }
+
+    private final LoaderPositionIndex loaderPositions;
+    private final NamespacedKey positionKey;
+    private final NamespacedKey ownerKey;
+
+    public LoaderChunkMarker(LyttleChunkLoader plugin) {
+        this.loaderPositions = plugin.loaderPositions;
+        this.positionKey = new NamespacedKey(plugin, "loader_position");
+        this.ownerKey = new NamespacedKey(plugin, "loader_owner");
+    }
+
+    /**
+     * Marks the chunk of the lodestone at lodestoneLoc as holding a loader of ownerKey.
+     */
+    public void mark(Location lodestoneLoc, String owner) {
+        PersistentDataContainer data = lodestoneLoc.getChunk().getPersistentDataContainer();
+        data.set(positionKey, PersistentDataType.INTEGER_ARRAY, new int[]{lodestoneLoc.getBlockX(), lodestoneLoc.getBlockY(), lodestoneLoc.getBlockZ()});
+        data.set(ownerKey, PersistentDataType.STRING, owner);
+    }
+
+    public void unmark(Chunk chunk) {
+        PersistentDataContainer data = chunk.getPersistentDataContainer();
+        data.remove(positionKey);
+        data.remove(ownerKey);
+    }
+
+    /**
+     * Checks the loader of a claimed chunk that just loaded.
+     * - VALID: the marked (or recorded) lodestone with its lightning rod is still there. Unmarked chunks of
+     *   loaders claimed before markers existed get marked here.
+     * - ORPHANED: the loader is gone, the claim can be removed.
+     * - UNKNOWN: neither a marker nor a recorded position, nothing to check.
+     */
+    public Validation validate(Chunk chunk, ChunkKey chunkKey, String owner) {
+        PersistentDataContainer data = chunk.getPersistentDataContainer();
+        int[] marked = data.get(positionKey, PersistentDataType.INTEGER_ARRAY);
+        if (marked == null || marked.length != 3) {
+            Location recorded = loaderPositions.get(chunkKey);
+            if (recorded == null) return Validation.UNKNOWN;
+            if (!isLoaderAt(chunk, recorded.getBlockX(), recorded.getBlockY(), recorded.getBlockZ())) return Validation.ORPHANED;
+            mark(recorded, owner);
+            return Validation.VALID;
+        }
+        if (!isLoaderAt(chunk, marked[0], marked[1], marked[2])) return Validation.ORPHANED;
+        if (!owner.equals(data.get(ownerKey, PersistentDataType.STRING))) data.set(ownerKey, PersistentDataType.STRING, owner);
+        return Validation.VALID;
+    }
+
+    private boolean isLoaderAt(Chunk chunk, int x, int y, int z) {
+        // The lodestone must be in this chunk, otherwise the marker is stale
+        if (x >> 4 != chunk.getX() || z >> 4 != chunk.getZ()) return false;
+        Block base = chunk.getWorld().getBlockAt(x, y, z);
+        return base.getType() == Material.LODESTONE && base.getRelative(0, 1, 0).getType() == Material.LIGHTNING_ROD;
+    }
+}
@@ -0,0 +1,163 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Samples what every running chunk loader costs the server, on a low-frequency schedule.
+ * - Every cost.sample_interval_seconds, all running loaders are sampled, cost.loaders_per_tick per tick.
+ * - A loader's cost is the weighted number of entities and tile entities in the loaded chunks of its area.
+ *   Chunks covered by several loaders are split evenly between them.
+ * - Scheduled block ticks are not counted: Paper has no per-chunk accessor for them.
+ * - The samples back /lyttlechunkloader top and, with cost.scale_billing, the per-loader billing factor.
+ *   Billing uses an exponential moving average of the score (cost.billing_smoothing), so a single busy sample
+ *   doesn't spike the fee, and the factor is capped at cost.max_billing_factor.
+ *
+ * All methods must be called on the main thread.
+ */
+public class LoaderCostSampler {
+    /**
+     * Last sampled cost of one loader.
+     */
+    public static final class LoaderCost {
+        public final int entities;
+        public final int tileEntities;
+        public final double score;
+        // Moving average of the score over all samples, used for billing
+        public final double smoothedScore;
+
+        private LoaderCost(int entities, int tileEntities, double score, double smoothedScore) {
+            this.entities = entities;
+            this.tileEntities = tileEntities;
+            this.score = score;
+            this.smoothedScore = smoothedScore;
+        }
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final ChunkTicketManager ticketManager;
+    private final ClaimRegistry claimRegistry;
+    private final ChunkRangeUtil chunkRangeUtil;
+    private final int loadersPerTick;
+    private final double entityWeight;
+    private final double tileEntityWeight;
+    private final double billingBaseline;
+    private final double minBillingFactor;
+    private final double maxBillingFactor;
+    private final double billingSmoothing;
+    private final Map<ChunkKey, LoaderCost> costs = new HashMap<>();
+    // Loaders still to sample in the current pass
+    private final Deque<ChunkKey> pending = new ArrayDeque<>();
+    private BukkitTask passTask;
+
+    public LoaderCostSampler(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.ticketManager = plugin.ticketManager;
+        this.claimRegistry = plugin.claimRegistry;
+        this.chunkRangeUtil = new ChunkRangeUtil(1, 4);
+        this.loadersPerTick = Math.max(1, plugin.config.getInt("cost.loaders_per_tick"));
+        this.entityWeight = plugin.config.getDouble("cost.entity_weight");
+        this.tileEntityWeight = plugin.config.getDouble("cost.tile_entity_weight");
+        this.billingBaseline = plugin.config.getDouble("cost.billing_baseline");
+        this.minBillingFactor = plugin.config.getDouble("cost.min_billing_factor");
+        this.maxBillingFactor = Math.max(minBillingFactor, plugin.config.getDouble("cost.max_billing_factor"));
+        this.billingSmoothing = Math.max(0.01, Math.min(1.0, plugin.config.getDouble("cost.billing_smoothing")));
+        long interval = Math.max(1, plugin.config.getInt("cost.sample_interval_seconds")) * 20L;
+        Bukkit.getScheduler().runTaskTimer(plugin, this::startPass, 20L, interval);
+    }
+
+    /**
+     * Returns the last sampled cost of a loader, or null if it wasn't sampled yet.
+     */
+    public LoaderCost getCost(ChunkKey centerKey) {
+        return costs.get(centerKey);
+    }
+
+    /**
+     * Returns the billing factor of a loader: its smoothed cost relative to cost.billing_baseline, between
+     * cost.min_billing_factor and cost.max_billing_factor. Loaders that weren't sampled yet are billed at the flat rate (1.0).
+     */
+    public double getBillingFactor(ChunkKey centerKey) {
+        LoaderCost cost = costs.get(centerKey);
+        if (cost == null || billingBaseline <= 0.0) return 1.0;
+        return Math.max(minBillingFactor, Math.min(maxBillingFactor, cost.smoothedScore / billingBaseline));
+    }
+
+    /**
+     * Returns the most expensive loaders, most expensive first.
+     */
+    public List<Map.Entry<ChunkKey, LoaderCost>> getTopLoaders(int limit) {
+        List<Map.Entry<ChunkKey, LoaderCost>> sorted = new ArrayList<>(costs.entrySet());
+        sorted.sort((a, b) -> Double.compare(b.getValue().score, a.getValue().score));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Returns the owners with the highest total cost of their loaders, most expensive first.
+     */
+    public List<Map.Entry<String, Double>> getTopOwners(int limit) {
+        Map<String, Double> byOwner = new HashMap<>();
+        for (Map.Entry<ChunkKey, LoaderCost> entry : costs.entrySet()) {
+            String ownerKey = claimRegistry.getOwner(entry.getKey());
+            if (ownerKey != null) byOwner.merge(ownerKey, entry.getValue().score, Double::sum);
+        }
+        List<Map.Entry<String, Double>> sorted = new ArrayList<>(byOwner.entrySet());
+        sorted.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    private void startPass() {
+        if (passTask != null) return; // The previous pass is still running
+        costs.keySet().removeIf(centerKey -> !claimRegistry.isClaimed(centerKey));
+        pending.addAll(ticketManager.getRunningLoaders());
+        if (pending.isEmpty()) return;
+        passTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sampleSome, 1L, 1L);
+    }
+
+    private void sampleSome() {
+        long start = System.nanoTime();
+        for (int i = 0; i < loadersPerTick && !pending.isEmpty(); i++) {
+            ChunkKey centerKey = pending.poll();
+            if (ticketManager.isActive(centerKey)) sample(centerKey);
+        }
+        plugin.metrics.recordSince("cost.sample", start);
+        if (pending.isEmpty()) {
+            passTask.cancel();
+            passTask = null;
+        }
+    }
+
+    private void sample(ChunkKey centerKey) {
+        World world = centerKey.getWorld();
+        if (world == null) return;
+        int worldIndex = centerKey.getWorldIndex();
+        int entities = 0;
+        int tileEntities = 0;
+        double score = 0.0;
+        LongIterator it = chunkRangeUtil.getAreaChunks(centerKey.getX(), centerKey.getZ()).iterator();
+        while (it.hasNext()) {
+            long packed = it.nextLong();
+            int cx = ChunkKey.unpackX(packed);
+            int cz = ChunkKey.unpackZ(packed);
+            // Never load a chunk just to measure it
+            if (!world.isChunkLoaded(cx, cz)) continue;
+            Chunk chunk = world.getChunkAt(cx, cz);
+            int chunkEntities = chunk.getEntities().length;
+            int chunkTileEntities = chunk.getTileEntities(false).length;
+            entities += chunkEntities;
+            tileEntities += chunkTileEntities;
+            double share = 1.0 / Math.max(1, ticketManager.getReferenceCount(worldIndex, packed));
+            score += (chunkEntities * entityWeight + chunkTileEntities * tileEntityWeight) * share;
+        }
+        LoaderCost previous = costs.get(centerKey);
+        double smoothedScore = previous == null ? score : previous.smoothedScore + billingSmoothing * (score - previous.smoothedScore);
+        costs.put(centerKey, new LoaderCost(entities, tileEntities, score, smoothedScore));
+    }
+}
@@ -0,0 +1,152 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import com.lyttledev.lyttleutils.types.YamlConfig;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the exact lodestone position of every claimed chunk loader.
+ * - Positions are recorded when a loader is claimed and removed with its claim.
+ * - Lets the enforcer and payment handler check known blocks instead of scanning whole chunks.
+ * - Persisted like claims: directly, through a coalesced background write when storage.write_behind is enabled,
+ *   or in the ClaimJournal with storage.engine: journal.
+ *
+ * Assumes positionConfig is structured as: {chunkKey: "x:y:z"}, one entry per claimed center chunk.
+ */
+public class LoaderPositionIndex {
+    private final YamlConfig positionConfig;
+    private final PerformanceMetrics metrics;
+    private final Map<ChunkKey, int[]> positions = new HashMap<>();
+    private final ClaimJournal journal; // null when using the yaml engine
+    private final WriteBehindYamlFile writeBehind; // null when write-behind is disabled
+
+    public LoaderPositionIndex(LyttleChunkLoader plugin) {
+        this.positionConfig = plugin.config.positions;
+        this.metrics = plugin.metrics;
+        this.journal = plugin.claimJournal;
+        this.writeBehind = journal == null && plugin.config.getBoolean("storage.write_behind")
+                ? new WriteBehindYamlFile(plugin, "positions.yml", this::snapshot, plugin.config.getInt("storage.flush_delay_ticks"))
+                : null;
+        load();
+    }
+
+    /**
+     * (Re)loads all known positions from the positions config, or from the journal.
+     */
+    public void load() {
+        positions.clear();
+        if (journal != null) {
+            positions.putAll(journal.getLoadedPositions());
+            return;
+        }
+        String[] chunkKeys = positionConfig.getKeys("");
+        if (chunkKeys == null) return;
+        for (String rawKey : chunkKeys) {
+            ChunkKey chunkKey = ChunkKey.fromString(rawKey);
+            Object raw = positionConfig.get(rawKey);
+            if (chunkKey == null || raw == null) continue;
+            int[] coords = parseCoords(raw.toString());
+            if (coords != null) positions.put(chunkKey, coords);
+        }
+    }
+
+    /**
+     * Records the lodestone position for the loader centered in chunkKey.
+     */
+    public void record(ChunkKey chunkKey, Location lodestoneLoc) {
+        int[] coords = {lodestoneLoc.getBlockX(), lodestoneLoc.getBlockY(), lodestoneLoc.getBlockZ()};
+        positions.put(chunkKey, coords);
+        if (journal != null) {
+            journal.appendPosition(chunkKey, coords);
+        } else if (writeBehind != null) {
+            writeBehind.markDirty();
+        } else {
+            positionConfig.set(chunkKey.toString(), formatCoords(coords));
+            metrics.increment("storage.file_writes");
+        }
+    }
+
+    /**
+     * Forgets the lodestone position for the loader centered in chunkKey.
+     */
+    public void remove(ChunkKey chunkKey) {
+        if (positions.remove(chunkKey) == null) return;
+        if (journal != null) {
+            journal.appendRemovePosition(chunkKey);
+        } else if (writeBehind != null) {
+            writeBehind.markDirty();
+        } else {
+            positionConfig.set(chunkKey.toString(), null);
+            metrics.increment("storage.file_writes");
+        }
+    }
+
+    /**
+     * Returns the recorded lodestone Location for chunkKey, or null if unknown or the world is not loaded.
+     */
+    public Location get(ChunkKey chunkKey) {
+        int[] coords = positions.get(chunkKey);
+        if (coords == null) return null;
+        World world = chunkKey.getWorld();
+        if (world == null) return null;
+        return new Location(world, coords[0], coords[1], coords[2]);
+    }
+
+    /**
+     * Returns true if a lodestone position is known for chunkKey.
+     */
+    public boolean contains(ChunkKey chunkKey) {
+        return positions.containsKey(chunkKey);
+    }
+
+    /**
+     * Writes all pending changes to disk right away. Call before reloading positions.yml.
+     */
+    public void flush() {
+        if (writeBehind != null) writeBehind.flushNow();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer.
+     */
+    public void shutdown() {
+        if (writeBehind != null) writeBehind.shutdown();
+    }
+
+    /**
+     * Returns a detached copy of all positions, used for journal compaction.
+     */
+    public Map<ChunkKey, int[]> getAllPositions() {
+        return new HashMap<>(positions);
+    }
+
+    /**
+     * Returns a detached copy of all positions in the positions.yml layout.
+     */
+    private Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        for (Map.Entry<ChunkKey, int[]> entry : positions.entrySet()) {
+            snapshot.put(entry.getKey().toString(), formatCoords(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    private String formatCoords(int[] coords) {
+        return coords[0] + ":" + coords[1] + ":" + coords[2];
+    }
+
+    private int[] parseCoords(String value) {
+        String[] parts = value.split(":");
+        if (parts.length < 3) return null;
+        try {
+            return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
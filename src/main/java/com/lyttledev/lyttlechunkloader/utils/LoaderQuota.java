@@ -0,0 +1,53 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttleutils.types.YamlConfig;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-owner chunk loader limits.
+ * - limits.max_loaders_per_owner applies to everyone, -1 means no limit.
+ * - Owners with the permission lyttlechunkloader.limit.<tier> get the limit of that entry in limits.tiers instead
+ *   (the highest one if they have several).
+ */
+public class LoaderQuota {
+    private static final String TIER_PERMISSION = "lyttlechunkloader.limit.";
+
+    private final int defaultLimit;
+    private final Map<String, Integer> tierLimits = new LinkedHashMap<>();
+
+    public LoaderQuota(LyttleChunkLoader plugin) {
+        this.defaultLimit = plugin.config.getInt("limits.max_loaders_per_owner");
+        YamlConfig tiers = plugin.config.general.contains("limits.tiers") ? plugin.config.general : plugin.config.defaultGeneral;
+        String[] tierNames = tiers.getKeys("limits.tiers");
+        if (tierNames == null) return;
+        for (String tier : tierNames) {
+            Object value = tiers.get("limits.tiers." + tier);
+            try {
+                // Only whole numbers, a value like 2.5 would otherwise be truncated silently
+                tierLimits.put(tier, value instanceof Integer || value instanceof Long
+                    ? ((Number) value).intValue()
+                    : Integer.parseInt(String.valueOf(value).trim()));
+            } catch (NumberFormatException e) {
+                plugin.getLogger().warning("Ignoring chunk loader limit tier " + tier + ": " + value + " is not a whole number.");
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of loaders the player may own, or -1 for no limit.
+     */
+    public int getLimit(Player player) {
+        if (defaultLimit < 0) return -1;
+        int limit = defaultLimit;
+        for (Map.Entry<String, Integer> tier : tierLimits.entrySet()) {
+            if (!player.hasPermission(TIER_PERMISSION + tier.getKey())) continue;
+            if (tier.getValue() < 0) return -1;
+            limit = Math.max(limit, tier.getValue());
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,210 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.types.ChunkKey;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Discovers physical DOUBLE chunk loaders (Lodestone + Lightning Rod stacked) without blocking the tick thread.
+ * - Chunk snapshots are taken on the main thread, unloaded chunks are fetched through the async chunk API.
+ * - Snapshots are searched in parallel on a small worker pool, skipping chunks without any Lodestone
+ *   in their palette and empty sections (ChunkSnapshot has no per-section palette).
+ * - Found positions are handed back to the main thread, verified against the live world and passed to the callback.
+ *   Positions in chunks that unloaded during the scan are reported as unverified, they are never checked with a
+ *   (blocking) block lookup.
+ *
+ * Used for legacy claims without a recorded position, admin audits and after restores.
+ */
+public class LoaderSnapshotScanner {
+    /**
+     * Outcome of a scan: every scanned chunk is in exactly one of the two maps.
+     */
+    public static final class Result {
+        // Chunk key -> lodestone Locations confirmed against the live world
+        public final Map<ChunkKey, List<Location>> confirmed = new HashMap<>();
+        // Chunk key -> lodestone Locations found in the snapshot of a chunk that unloaded before they could be confirmed
+        public final Map<ChunkKey, List<Location>> unverified = new HashMap<>();
+    }
+
+    private final LyttleChunkLoader plugin;
+    private final ExecutorService workers;
+    private final BlockData lodestoneData;
+
+    public LoaderSnapshotScanner(LyttleChunkLoader plugin) {
+        this.plugin = plugin;
+        this.lodestoneData = Material.LODESTONE.createBlockData();
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "LyttleChunkLoader-Scanner-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans the given chunks of a world for DOUBLE chunk loaders. Must be called on the main thread.
+     * The callback runs on the main thread with every chunk key mapped to its lodestone Locations, split into
+     * confirmed and unverified ones (see Result). Chunks that were never generated are skipped and never generated by the scan.
+     */
+    public void scan(World world, Collection<ChunkKey> chunkKeys, Consumer<Result> callback) {
+        long start = System.nanoTime();
+        int minY = world.getMinHeight();
+        int maxY = world.getMaxHeight();
+        List<CompletableFuture<Map.Entry<ChunkKey, List<int[]>>>> pending = new ArrayList<>();
+
+        for (ChunkKey chunkKey : chunkKeys) {
+            int cx = chunkKey.getX();
+            int cz = chunkKey.getZ();
+
+            CompletableFuture<Chunk> chunkFuture = world.isChunkLoaded(cx, cz)
+                    ? CompletableFuture.completedFuture(world.getChunkAt(cx, cz))
+                    : world.getChunkAtAsync(cx, cz, false);
+
+            // Snapshots are taken where the chunk future completes, which is always the main thread.
+            CompletableFuture<Map.Entry<ChunkKey, List<int[]>>> result = chunkFuture
+                    .thenApply(chunk -> chunk == null ? null : chunk.getChunkSnapshot(false, false, false))
+                    .thenApplyAsync(snapshot -> {
+                        long chunkStart = System.nanoTime();
+                        List<int[]> loaders = findLoaders(snapshot, minY, maxY);
+                        plugin.metrics.recordSince("scanner.chunk", chunkStart);
+                        return Map.entry(chunkKey, loaders);
+                    }, workers)
+                    .exceptionally(e -> {
+                        plugin.getLogger().warning("Failed to scan chunk " + chunkKey + ": " + e.getMessage());
+                        return Map.entry(chunkKey, List.of());
+                    });
+            pending.add(result);
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).thenRun(() -> {
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                Result found = new Result();
+                for (CompletableFuture<Map.Entry<ChunkKey, List<int[]>>> future : pending) {
+                    Map.Entry<ChunkKey, List<int[]>> entry = future.join();
+                    ChunkKey chunkKey = entry.getKey();
+                    List<Location> bases = new ArrayList<>();
+                    for (int[] pos : entry.getValue()) bases.add(new Location(world, pos[0], pos[1], pos[2]));
+                    // Never load a chunk just to confirm what its snapshot showed
+                    if (!bases.isEmpty() && !world.isChunkLoaded(chunkKey.getX(), chunkKey.getZ())) {
+                        found.unverified.put(chunkKey, bases);
+                        continue;
+                    }
+                    bases.removeIf(base -> !isConfirmed(base));
+                    found.confirmed.put(chunkKey, bases);
+                }
+                plugin.metrics.recordSince("scanner.scan", start);
+                plugin.metrics.add("scanner.chunks", pending.size());
+                callback.accept(found);
+            });
+        });
+    }
+
+    /**
+     * Re-discovers the lodestone position of claimed loaders and records them in the position index.
+     * If onlyMissing is true, only claims without a recorded position are scanned.
+     * onDone receives (loaders found, claims without a physical loader) on the main thread.
+     */
+    public void rebuildPositions(boolean onlyMissing, BiConsumer<Integer, Integer> onDone) {
+        LoaderPositionIndex loaderPositions = plugin.loaderPositions;
+        Map<Integer, List<ChunkKey>> keysByWorld = new HashMap<>();
+        for (ChunkKey chunkKey : getAllClaimedKeys()) {
+            if (onlyMissing && loaderPositions.contains(chunkKey)) continue;
+            keysByWorld.computeIfAbsent(chunkKey.getWorldIndex(), k -> new ArrayList<>()).add(chunkKey);
+        }
+
+        AtomicInteger remainingWorlds = new AtomicInteger(keysByWorld.size());
+        AtomicInteger foundCount = new AtomicInteger();
+        AtomicInteger missingCount = new AtomicInteger();
+        if (keysByWorld.isEmpty()) {
+            onDone.accept(0, 0);
+            return;
+        }
+
+        for (Map.Entry<Integer, List<ChunkKey>> entry : keysByWorld.entrySet()) {
+            World world = ChunkKey.world(entry.getKey());
+            if (world == null) {
+                missingCount.addAndGet(entry.getValue().size());
+                if (remainingWorlds.decrementAndGet() == 0) onDone.accept(foundCount.get(), missingCount.get());
+                continue;
+            }
+            scan(world, entry.getValue(), found -> {
+                for (Map.Entry<ChunkKey, List<Location>> result : found.confirmed.entrySet()) {
+                    if (result.getValue().isEmpty()) {
+                        missingCount.incrementAndGet();
+                        continue;
+                    }
+                    loaderPositions.record(result.getKey(), result.getValue().get(0));
+                    foundCount.incrementAndGet();
+                }
+                // Only recorded, never broken: the snapshot is recent and the chunk validates its loader when it loads
+                for (Map.Entry<ChunkKey, List<Location>> result : found.unverified.entrySet()) {
+                    loaderPositions.record(result.getKey(), result.getValue().get(0));
+                    foundCount.incrementAndGet();
+                }
+                if (remainingWorlds.decrementAndGet() == 0) onDone.accept(foundCount.get(), missingCount.get());
+            });
+        }
+    }
+
+    /**
+     * Stops the worker pool. Pending scans are abandoned.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Searches a snapshot for Lodestone blocks with a Lightning Rod directly above. Runs on a worker thread.
+     * ChunkSnapshot only exposes the palette of the whole chunk, so chunks without a Lodestone are skipped as a whole
+     * and empty sections are skipped; the remaining sections are scanned block by block.
+     */
+    private List<int[]> findLoaders(ChunkSnapshot snapshot, int minY, int maxY) {
+        if (snapshot == null || !snapshot.contains(lodestoneData)) return List.of();
+
+        List<int[]> bases = new ArrayList<>();
+        int baseX = snapshot.getX() << 4;
+        int baseZ = snapshot.getZ() << 4;
+        for (int sectionY = minY; sectionY < maxY; sectionY += 16) {
+            if (snapshot.isSectionEmpty((sectionY - minY) >> 4)) continue;
+            int sectionTop = Math.min(sectionY + 16, maxY - 1);
+            for (int y = sectionY; y < sectionTop; y++) {
+                for (int lx = 0; lx < 16; lx++) {
+                    for (int lz = 0; lz < 16; lz++) {
+                        if (snapshot.getBlockType(lx, y, lz) != Material.LODESTONE) continue;
+                        if (snapshot.getBlockType(lx, y + 1, lz) != Material.LIGHTNING_ROD) continue;
+                        bases.add(new int[]{baseX + lx, y, baseZ + lz});
+                    }
+                }
+            }
+        }
+        return bases;
+    }
+
+    /**
+     * Confirms a found loader against the live world. The chunk must be loaded.
+     */
+    private boolean isConfirmed(Location base) {
+        return base.getBlock().getType() == Material.LODESTONE
+                && base.clone().add(0, 1, 0).getBlock().getType() == Material.LIGHTNING_ROD;
+    }
+
+    private Set<ChunkKey> getAllClaimedKeys() {
+        return plugin.claimRegistry.getAllClaims().keySet();
+    }
+}
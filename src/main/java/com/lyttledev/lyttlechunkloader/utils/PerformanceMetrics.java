@@ -0,0 +1,148 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Lightweight counters, timers and gauges describing what the plugin costs the server.
+ * - Counters and timers are thread-safe and can be updated from the economy, scanner and render threads.
+ * - Gauges are read from the plugin services when a snapshot is taken, so snapshot() must be called on the main thread.
+ * - snapshot() is the programmatic API; /lyttlechunkloader stats prints the same data.
+ */
+public class PerformanceMetrics {
+    /**
+     * Aggregated durations of one timed operation.
+     */
+    public static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private TimerSnapshot snapshot() {
+            return new TimerSnapshot(count.sum(), totalNanos.sum(), maxNanos.get());
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+    }
+
+    public static final class TimerSnapshot {
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+
+        private TimerSnapshot(long count, long totalNanos, long maxNanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public double getAverageMillis() {
+            return count > 0 ? totalNanos / (double) count / 1_000_000.0 : 0.0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Point-in-time copy of all metrics, sorted by name.
+     */
+    public static final class Snapshot {
+        public final Map<String, Number> gauges;
+        public final Map<String, Long> counters;
+        public final Map<String, TimerSnapshot> timers;
+
+        private Snapshot(Map<String, Number> gauges, Map<String, Long> counters, Map<String, TimerSnapshot> timers) {
+            this.gauges = Collections.unmodifiableMap(gauges);
+            this.counters = Collections.unmodifiableMap(counters);
+            this.timers = Collections.unmodifiableMap(timers);
+        }
+    }
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, ? extends Number>>> gaugeGroups = new ConcurrentHashMap<>();
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long amount) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(amount);
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * Records the time passed since startNanos (from System.nanoTime()).
+     */
+    public void recordSince(String name, long startNanos) {
+        timer(name).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registers a value that is read when a snapshot is taken.
+     */
+    public void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Registers a group of values (e.g. one per world), reported as prefix.key.
+     */
+    public void registerGaugeGroup(String prefix, Supplier<Map<String, ? extends Number>> supplier) {
+        gaugeGroups.put(prefix, supplier);
+    }
+
+    /**
+     * Takes a snapshot of all metrics. Must be called on the main thread.
+     */
+    public Snapshot snapshot() {
+        Map<String, Number> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            gaugeValues.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Supplier<Map<String, ? extends Number>>> group : gaugeGroups.entrySet()) {
+            for (Map.Entry<String, ? extends Number> value : group.getValue().get().entrySet()) {
+                gaugeValues.put(group.getKey() + "." + value.getKey(), value.getValue());
+            }
+        }
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            counterValues.put(counter.getKey(), counter.getValue().sum());
+        }
+        Map<String, TimerSnapshot> timerValues = new TreeMap<>();
+        for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+            timerValues.put(timer.getKey(), timer.getValue().snapshot());
+        }
+        return new Snapshot(gaugeValues, counterValues, timerValues);
+    }
+
+    /**
+     * Resets all counters and timers. Gauges always reflect the current state.
+     */
+    public void reset() {
+        for (LongAdder counter : counters.values()) counter.reset();
+        for (Timer timer : timers.values()) timer.reset();
+    }
+}
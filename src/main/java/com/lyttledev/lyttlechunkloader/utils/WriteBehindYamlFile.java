@@ -0,0 +1,145 @@
+package com.lyttledev.lyttlechunkloader.utils;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind persistence for a plugin managed YAML file (e.g. chunks.yml).
+ * - markDirty() only flags the file; bursts of changes are coalesced into one write after a delay.
+ * - The data is snapshotted on the main thread, serialized and written on a single background thread.
+ * - Writes go to a temp file that is atomically renamed over the target, so a crash never leaves a half-written file.
+ * - flushNow() writes synchronously, used on disable and before reloads.
+ */
+public class WriteBehindYamlFile {
+    private final LyttleChunkLoader plugin;
+    private final Path target;
+    private final Path temp;
+    private final Supplier<Map<String, Object>> snapshotSupplier;
+    private final long flushDelayTicks;
+    private final List<String> header;
+    private final ExecutorService writer;
+    private BukkitTask scheduledFlush;
+    private boolean dirty = false;
+
+    /**
+     * @param fileName         File in the plugin data folder, also used to read the header from the bundled resource
+     * @param snapshotSupplier Called on the main thread; must return a detached copy of the data to write
+     * @param flushDelayTicks  Ticks to wait after the first change before writing
+     */
+    public WriteBehindYamlFile(LyttleChunkLoader plugin, String fileName, Supplier<Map<String, Object>> snapshotSupplier, long flushDelayTicks) {
+        this.plugin = plugin;
+        this.target = new File(plugin.getDataFolder(), fileName).toPath();
+        this.temp = new File(plugin.getDataFolder(), fileName + ".tmp").toPath();
+        this.snapshotSupplier = snapshotSupplier;
+        this.flushDelayTicks = Math.max(1, flushDelayTicks);
+        this.header = readHeader(fileName);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LyttleChunkLoader-Writer-" + fileName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Marks the file as changed. The write happens once, flushDelayTicks after the first change.
+     */
+    public void markDirty() {
+        dirty = true;
+        if (scheduledFlush != null || !plugin.isEnabled()) return;
+        scheduledFlush = Bukkit.getScheduler().runTaskLater(plugin, this::flushAsync, flushDelayTicks);
+    }
+
+    /**
+     * Snapshots the data now and writes it in the background.
+     */
+    public void flushAsync() {
+        scheduledFlush = null;
+        if (!dirty) return;
+        dirty = false;
+        Map<String, Object> snapshot = snapshotSupplier.get();
+        writer.execute(() -> write(snapshot));
+    }
+
+    /**
+     * Writes all pending changes synchronously and waits for background writes to finish.
+     */
+    public void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel();
+            scheduledFlush = null;
+        }
+        if (dirty) {
+            dirty = false;
+            Map<String, Object> snapshot = snapshotSupplier.get();
+            writer.execute(() -> write(snapshot));
+        }
+        try {
+            writer.submit(() -> { }).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Timed out waiting for " + target.getFileName() + " to be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and stops the background writer.
+     */
+    public void shutdown() {
+        flushNow();
+        writer.shutdown();
+    }
+
+    private void write(Map<String, Object> snapshot) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.options().setHeader(header);
+        for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+            yaml.set(entry.getKey(), entry.getValue());
+        }
+
+        try {
+            Files.writeString(temp, yaml.saveToString(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            plugin.metrics.increment("storage.file_writes");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write " + target.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private List<String> readHeader(String fileName) {
+        List<String> lines = new ArrayList<>();
+        InputStream resource = plugin.getResource(fileName);
+        if (resource == null) return lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && line.startsWith("#")) {
+                lines.add(line.length() > 1 ? line.substring(line.startsWith("# ") ? 2 : 1) : "");
+            }
+        } catch (IOException ignored) {
+            // A missing header is harmless
+        }
+        return lines;
+    }
+}
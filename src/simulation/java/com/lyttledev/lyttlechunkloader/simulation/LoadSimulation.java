@@ -0,0 +1,256 @@
+package com.lyttledev.lyttlechunkloader.simulation;
+
+import com.lyttledev.lyttlechunkloader.LyttleChunkLoader;
+import com.lyttledev.lyttlechunkloader.utils.PerformanceMetrics;
+import com.lyttledev.lyttlechunkloader.utils.WorldBorderChunkHighlighter;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.ServicePriority;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.mockbukkit.mockbukkit.world.WorldMock;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Headless load simulation of the plugin on MockBukkit, with a stub Vault economy.
+ * - Simulated owners join, place chunk loaders, quit and rejoin all at once (a join storm after a restart),
+ *   and keep placing and breaking loaders while billing runs.
+ * - Every tick is timed around the events fired for it plus the scheduler tick, and main-thread allocations
+ *   are sampled, to find scaling limits of the handlers before players do.
+ *
+ * Arguments (key=value): owners, loaders (per owner), ticks, latency (economy latency in microseconds),
+ * churn (place/break pairs per tick), seed.
+ */
+public class LoadSimulation {
+    private final int owners;
+    private final int loadersPerOwner;
+    private final int ticks;
+    private final int churnPerTick;
+    private final Random random;
+    private final StubEconomy economy;
+
+    private ServerMock server;
+    private WorldMock world;
+    private LyttleChunkLoader plugin;
+    private final List<PlayerMock> players = new ArrayList<>();
+    private final Map<UUID, List<Location>> placedLoaders = new HashMap<>();
+    private int nextSlot = 0;
+
+    private long placed = 0;
+    private long broken = 0;
+    private long joins = 0;
+    private long quits = 0;
+    private int peakTickets = 0;
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split > 0) options.put(arg.substring(0, split).trim(), arg.substring(split + 1).trim());
+        }
+        LoadSimulation simulation = new LoadSimulation(
+                Integer.parseInt(options.getOrDefault("owners", "1000")),
+                Integer.parseInt(options.getOrDefault("loaders", "3")),
+                Integer.parseInt(options.getOrDefault("ticks", "6000")),
+                Long.parseLong(options.getOrDefault("latency", "500")),
+                Integer.parseInt(options.getOrDefault("churn", "2")),
+                Long.parseLong(options.getOrDefault("seed", "42"))
+        );
+        try {
+            simulation.run();
+        } finally {
+            MockBukkit.unmock();
+        }
+    }
+
+    public LoadSimulation(int owners, int loadersPerOwner, int ticks, long latencyMicros, int churnPerTick, long seed) {
+        this.owners = owners;
+        this.loadersPerOwner = loadersPerOwner;
+        this.ticks = ticks;
+        this.churnPerTick = churnPerTick;
+        this.random = new Random(seed);
+        this.economy = new StubEconomy(latencyMicros);
+    }
+
+    public void run() {
+        setUp();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] tickNanos = new long[ticks];
+        long[] tickBytes = new long[ticks];
+
+        int setupTicks = Math.max(1, ticks / 4);
+        int stormTick = setupTicks + 100;
+        int placePerTick = Math.max(1, (owners * loadersPerOwner) / setupTicks + 1);
+
+        for (int tick = 0; tick < ticks; tick++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            if (tick == 0) {
+                // Everyone joins at once
+                for (int i = 0; i < owners; i++) addOwner(i);
+            } else if (tick < setupTicks) {
+                // Owners build up their loaders
+                for (int i = 0; i < placePerTick; i++) placeForRandomOwner();
+            } else if (tick == setupTicks) {
+                // Server "restart": everyone leaves...
+                for (PlayerMock player : players) quit(player);
+            } else if (tick == stormTick) {
+                // ...and joins again in the same tick
+                for (PlayerMock player : players) rejoin(player);
+            } else if (tick > stormTick) {
+                churn();
+            }
+
+            server.getScheduler().performOneTick();
+            tickNanos[tick] = System.nanoTime() - start;
+            tickBytes[tick] = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            peakTickets = Math.max(peakTickets, plugin.ticketManager.getTicketCount());
+        }
+
+        server.getScheduler().waitAsyncTasksFinished();
+        report(tickNanos, tickBytes, setupTicks, stormTick);
+    }
+
+    private void setUp() {
+        server = MockBukkit.mock();
+        MockBukkit.createMockPlugin("packetevents");
+        server.getServicesManager().register(Economy.class, economy, MockBukkit.createMockPlugin("Vault"), ServicePriority.Normal);
+        world = server.addSimpleWorld("world");
+        plugin = MockBukkit.load(LyttleChunkLoader.class);
+        // No client to send world border packets to
+        plugin.borderHighlighter = new WorldBorderChunkHighlighter(plugin) {
+            @Override
+            public void sendBorders(Player player, Location center, int chunkRadius, int durationTicks) { }
+        };
+    }
+
+    private void addOwner(int index) {
+        String name = "sim" + index;
+        // Most owners can pay for hours, some run out during the simulation
+        economy.setBalance(name, index % 10 == 0 ? 30.0 * loadersPerOwner * 20 : 1_000_000_000.0);
+        PlayerMock player = server.addPlayer(name);
+        players.add(player);
+        joins++;
+    }
+
+    private void quit(PlayerMock player) {
+        if (!player.isOnline()) return;
+        player.disconnect();
+        quits++;
+    }
+
+    private void rejoin(PlayerMock player) {
+        if (player.isOnline()) return;
+        player.reconnect();
+        joins++;
+    }
+
+    private void churn() {
+        for (int i = 0; i < churnPerTick; i++) {
+            PlayerMock player = players.get(random.nextInt(players.size()));
+            if (!player.isOnline()) continue;
+            List<Location> loaders = placedLoaders.get(player.getUniqueId());
+            if (loaders != null && !loaders.isEmpty()) breakLoader(player, loaders.remove(random.nextInt(loaders.size())));
+            placeLoader(player);
+        }
+        // A few players come and go
+        if (random.nextInt(20) == 0) {
+            PlayerMock player = players.get(random.nextInt(players.size()));
+            if (player.isOnline()) quit(player);
+            else rejoin(player);
+        }
+    }
+
+    private void placeForRandomOwner() {
+        PlayerMock player = players.get(random.nextInt(players.size()));
+        List<Location> loaders = placedLoaders.get(player.getUniqueId());
+        if (loaders != null && loaders.size() >= loadersPerOwner) return;
+        placeLoader(player);
+    }
+
+    /**
+     * Builds a lodestone with a lightning rod on top in a fresh chunk, 4 chunks apart from the others, and fires the place event.
+     */
+    private void placeLoader(PlayerMock player) {
+        int slot = nextSlot++;
+        int cx = (slot % 512) * 4;
+        int cz = (slot / 512) * 4;
+        Block lodestone = world.getBlockAt(cx * 16 + 8, 64, cz * 16 + 8);
+        Block rod = lodestone.getRelative(0, 1, 0);
+        lodestone.setType(Material.LODESTONE);
+        rod.setType(Material.LIGHTNING_ROD);
+
+        server.getPluginManager().callEvent(new BlockPlaceEvent(
+                rod, rod.getState(), lodestone, new ItemStack(Material.LIGHTNING_ROD), player, true, EquipmentSlot.HAND
+        ));
+        placedLoaders.computeIfAbsent(player.getUniqueId(), uuid -> new ArrayList<>()).add(lodestone.getLocation());
+        placed++;
+    }
+
+    private void breakLoader(PlayerMock player, Location lodestoneLocation) {
+        Block lodestone = lodestoneLocation.getBlock();
+        if (lodestone.getType() != Material.LODESTONE) return; // Already dropped for insufficient funds
+        server.getPluginManager().callEvent(new BlockBreakEvent(lodestone, player));
+        lodestone.setType(Material.AIR);
+        lodestone.getRelative(0, 1, 0).setType(Material.AIR);
+        broken++;
+    }
+
+    private void report(long[] tickNanos, long[] tickBytes, int setupTicks, int stormTick) {
+        System.out.println("==== LyttleChunkLoader load simulation ====");
+        System.out.printf(Locale.ROOT, "Owners: %d, loaders per owner: %d, ticks: %d%n", owners, loadersPerOwner, ticks);
+        System.out.printf(Locale.ROOT, "Loaders placed: %d, broken: %d, joins: %d, quits: %d%n", placed, broken, joins, quits);
+        printTicks("All ticks", tickNanos, tickBytes, 0, ticks);
+        printTicks("Build-up", tickNanos, tickBytes, 0, Math.min(setupTicks, ticks));
+        printTicks("Join storm (+200 ticks)", tickNanos, tickBytes, Math.min(stormTick, ticks), Math.min(stormTick + 200, ticks));
+        printTicks("Steady state", tickNanos, tickBytes, Math.min(stormTick + 200, ticks), ticks);
+        System.out.printf(Locale.ROOT, "Tickets held: %d at the end, %d peak%n", plugin.ticketManager.getTicketCount(), peakTickets);
+        System.out.printf(Locale.ROOT, "Economy calls: %d reads, %d transactions%n", economy.getReads(), economy.getTransactions());
+
+        PerformanceMetrics.Snapshot snapshot = plugin.metrics.snapshot();
+        System.out.println("Plugin metrics:");
+        for (Map.Entry<String, Number> gauge : snapshot.gauges.entrySet()) {
+            System.out.println("  " + gauge.getKey() + ": " + gauge.getValue());
+        }
+        for (Map.Entry<String, Long> counter : snapshot.counters.entrySet()) {
+            System.out.println("  " + counter.getKey() + ": " + counter.getValue());
+        }
+        for (Map.Entry<String, PerformanceMetrics.TimerSnapshot> timer : snapshot.timers.entrySet()) {
+            PerformanceMetrics.TimerSnapshot value = timer.getValue();
+            System.out.printf(Locale.ROOT, "  %s: %d runs, avg %.3f ms, max %.3f ms%n",
+                    timer.getKey(), value.count, value.getAverageMillis(), value.getMaxMillis());
+        }
+    }
+
+    private void printTicks(String label, long[] tickNanos, long[] tickBytes, int from, int to) {
+        if (to <= from) return;
+        long[] sorted = Arrays.copyOfRange(tickNanos, from, to);
+        Arrays.sort(sorted);
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = from; i < to; i++) {
+            totalNanos += tickNanos[i];
+            totalBytes += tickBytes[i];
+        }
+        int count = to - from;
+        System.out.printf(Locale.ROOT, "%s (%d ticks): avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms, %.1f KB allocated per tick%n",
+                label, count,
+                totalNanos / (double) count / 1_000_000.0,
+                sorted[count / 2] / 1_000_000.0,
+                sorted[Math.min(count - 1, (int) (count * 0.99))] / 1_000_000.0,
+                sorted[count - 1] / 1_000_000.0,
+                totalBytes / (double) count / 1024.0);
+    }
+}
@@ -0,0 +1,207 @@
+package com.lyttledev.lyttlechunkloader.simulation;
+
+import net.milkbowl.vault.economy.AbstractEconomy;
+import net.milkbowl.vault.economy.EconomyResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory Vault economy for the load simulation.
+ * - Balances are kept per player name; every call sleeps latencyMicros to mimic a database-backed economy.
+ * - Counts reads and transactions, so the report can show how many economy calls the plugin made.
+ * - Banks are not supported.
+ */
+public class StubEconomy extends AbstractEconomy {
+    private final Map<String, Double> balances = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+
+    public StubEconomy(long latencyMicros) {
+        this.latencyNanos = latencyMicros * 1000L;
+    }
+
+    public void setBalance(String playerName, double balance) {
+        balances.put(playerName, balance);
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    private void simulateLatency() {
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "StubEconomy";
+    }
+
+    @Override
+    public boolean hasBankSupport() {
+        return false;
+    }
+
+    @Override
+    public int fractionalDigits() {
+        return 2;
+    }
+
+    @Override
+    public String format(double amount) {
+        return String.format("%.2f", amount);
+    }
+
+    @Override
+    public String currencyNamePlural() {
+        return "coins";
+    }
+
+    @Override
+    public String currencyNameSingular() {
+        return "coin";
+    }
+
+    @Override
+    public boolean hasAccount(String playerName) {
+        return balances.containsKey(playerName);
+    }
+
+    @Override
+    public boolean hasAccount(String playerName, String worldName) {
+        return hasAccount(playerName);
+    }
+
+    @Override
+    public double getBalance(String playerName) {
+        reads.incrementAndGet();
+        simulateLatency();
+        return balances.getOrDefault(playerName, 0.0);
+    }
+
+    @Override
+    public double getBalance(String playerName, String world) {
+        return getBalance(playerName);
+    }
+
+    @Override
+    public boolean has(String playerName, double amount) {
+        reads.incrementAndGet();
+        simulateLatency();
+        return balances.getOrDefault(playerName, 0.0) >= amount;
+    }
+
+    @Override
+    public boolean has(String playerName, String worldName, double amount) {
+        return has(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, double amount) {
+        transactions.incrementAndGet();
+        simulateLatency();
+        double[] result = new double[1];
+        boolean[] success = new boolean[1];
+        balances.compute(playerName, (name, balance) -> {
+            double current = balance != null ? balance : 0.0;
+            success[0] = current >= amount;
+            result[0] = success[0] ? current - amount : current;
+            return result[0];
+        });
+        return success[0]
+                ? new EconomyResponse(amount, result[0], EconomyResponse.ResponseType.SUCCESS, null)
+                : new EconomyResponse(0, result[0], EconomyResponse.ResponseType.FAILURE, "Insufficient funds");
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, String worldName, double amount) {
+        return withdrawPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, double amount) {
+        transactions.incrementAndGet();
+        simulateLatency();
+        double balance = balances.merge(playerName, amount, Double::sum);
+        return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.SUCCESS, null);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, String worldName, double amount) {
+        return depositPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, String player) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse deleteBank(String name) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse bankBalance(String name) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse bankHas(String name, double amount) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse bankWithdraw(String name, double amount) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse bankDeposit(String name, double amount) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, String playerName) {
+        return notSupported();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, String playerName) {
+        return notSupported();
+    }
+
+    @Override
+    public List<String> getBanks() {
+        return List.of();
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName) {
+        balances.putIfAbsent(playerName, 0.0);
+        return true;
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName, String worldName) {
+        return createPlayerAccount(playerName);
+    }
+
+    private EconomyResponse notSupported() {
+        return new EconomyResponse(0, 0, EconomyResponse.ResponseType.NOT_IMPLEMENTED, "Banks are not supported");
+    }
+}